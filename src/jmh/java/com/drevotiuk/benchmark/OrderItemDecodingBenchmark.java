@@ -0,0 +1,84 @@
+package com.drevotiuk.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import com.drevotiuk.model.OrderItem;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Measures decoding of a {@link List} of {@link OrderItem} objects from a
+ * RabbitMQ message, both through the {@link Jackson2JsonMessageConverter} used
+ * by the pricing listeners and through the {@link ObjectMapper} used by the
+ * batch quantity listeners.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderItemDecodingBenchmark {
+  private static final TypeReference<List<OrderItem>> ORDER_ITEMS_TYPE = new TypeReference<List<OrderItem>>() {
+  };
+
+  @Param({ "1", "20" })
+  private int items;
+
+  private Jackson2JsonMessageConverter messageConverter;
+  private ObjectMapper objectMapper;
+  private ObjectReader orderItemsReader;
+  private Message message;
+
+  @Setup
+  public void setUp() throws Exception {
+    messageConverter = new Jackson2JsonMessageConverter();
+    objectMapper = new ObjectMapper();
+    orderItemsReader = objectMapper.readerFor(ORDER_ITEMS_TYPE);
+
+    List<OrderItem> orderItems = IntStream.range(0, items)
+        .mapToObj(i -> new OrderItem(ObjectId.get().toHexString(), i + 1))
+        .collect(Collectors.toList());
+    MessageProperties properties = new MessageProperties();
+    properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+    properties.setContentEncoding(StandardCharsets.UTF_8.name());
+    properties.setInferredArgumentType(objectMapper.getTypeFactory().constructType(ORDER_ITEMS_TYPE));
+    message = new Message(objectMapper.writeValueAsBytes(orderItems), properties);
+  }
+
+  @Benchmark
+  public Object decodeWithMessageConverter() {
+    return messageConverter.fromMessage(message);
+  }
+
+  @Benchmark
+  public List<OrderItem> decodeWithObjectMapper() throws Exception {
+    return objectMapper.readValue(message.getBody(), ORDER_ITEMS_TYPE);
+  }
+
+  @Benchmark
+  public List<OrderItem> decodeWithTypedReader() throws Exception {
+    return orderItemsReader.readValue(message.getBody());
+  }
+}
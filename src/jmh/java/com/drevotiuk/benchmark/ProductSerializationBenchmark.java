@@ -0,0 +1,66 @@
+package com.drevotiuk.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Measures Jackson serialization of a page of {@link ProductView} objects, as
+ * written by the product endpoints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductSerializationBenchmark {
+  @Param({ "20", "100" })
+  private int size;
+
+  private ObjectMapper objectMapper;
+  private ObjectWriter listWriter;
+  private List<ProductView> products;
+
+  @Setup
+  public void setUp() {
+    objectMapper = new ObjectMapper();
+    listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+        .constructCollectionType(List.class, ProductView.class));
+    products = IntStream.range(0, size)
+        .mapToObj(i -> new ProductView(ObjectId.get(), "Product " + i,
+            ProductCategory.values()[i % ProductCategory.values().length].name(), BigDecimal.valueOf(1999 + i, 2), i))
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public byte[] serializeWithObjectMapper() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(products);
+  }
+
+  @Benchmark
+  public byte[] serializeWithTypedWriter() throws JsonProcessingException {
+    return listWriter.writeValueAsBytes(products);
+  }
+}
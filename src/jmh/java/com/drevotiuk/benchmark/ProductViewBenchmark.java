@@ -0,0 +1,44 @@
+package com.drevotiuk.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductView;
+
+/**
+ * Measures mapping a {@link Product} to a {@link ProductView}, which is done
+ * for every product returned by the API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductViewBenchmark {
+  private Product product;
+
+  @Setup
+  public void setUp() {
+    product = new Product(ObjectId.get(), "Benchmark product", ProductCategory.TOYS, new BigDecimal("19.99"), 42);
+  }
+
+  @Benchmark
+  public ProductView mapProduct() {
+    return new ProductView(product);
+  }
+}
@@ -0,0 +1,46 @@
+package com.drevotiuk.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the line total calculation of the pricing listeners,
+ * {@code price * qty} on {@link BigDecimal}, for prices of different scales.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TotalPriceBenchmark {
+  @Param({ "19.99", "1249.5", "0.0001" })
+  private String price;
+
+  @Param({ "1", "250" })
+  private int qty;
+
+  private BigDecimal unitPrice;
+
+  @Setup
+  public void setUp() {
+    unitPrice = new BigDecimal(price);
+  }
+
+  @Benchmark
+  public BigDecimal multiply() {
+    return unitPrice.multiply(BigDecimal.valueOf(qty));
+  }
+}
@@ -0,0 +1,315 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.CloseableIterator;
+
+import com.drevotiuk.model.ProcessedMessage;
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductSuggestion;
+import com.drevotiuk.model.ProductView;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.result.UpdateResult;
+
+/**
+ * {@link MongoTemplate} stand-in backed by an {@link InMemoryProductStore}.
+ * <p>
+ * Implements the operations the services issue directly: bulk quantity
+ * updates with their {@code qty} and reservation guards and tags, the
+ * clearing of processed reservation tags, the outcome resolution query, the
+ * catalog pages with their filters, sorts and keyset cursors, the export and
+ * name index streams and the processed message records. The underlying client
+ * is never connected.
+ * </p>
+ * <p>
+ * Text search queries are not supported and fail, so the search endpoint
+ * cannot be measured with the harness.
+ * </p>
+ */
+public class InMemoryMongoTemplate extends MongoTemplate {
+  private static final String RESERVATIONS_FIELD = "reservations";
+
+  private final InMemoryProductStore store;
+  private final Set<String> processedMessages = ConcurrentHashMap.newKeySet();
+
+  public InMemoryMongoTemplate(InMemoryProductStore store) {
+    super(MongoClients.create("mongodb://localhost:27017/?serverSelectionTimeoutMS=1"), "harness");
+    this.store = store;
+  }
+
+  @Override
+  public BulkOperations bulkOps(BulkMode mode, Class<?> entityClass) {
+    List<Document[]> operations = new ArrayList<>();
+    return (BulkOperations) Proxy.newProxyInstance(BulkOperations.class.getClassLoader(),
+        new Class<?>[] { BulkOperations.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "updateOne":
+              operations.add(new Document[] { ((Query) args[0]).getQueryObject(),
+                  ((Update) args[1]).getUpdateObject() });
+              return proxy;
+            case "execute":
+              int matched = (int) operations.stream().filter(operation -> apply(operation[0], operation[1])).count();
+              return BulkWriteResult.acknowledged(0, matched, 0, matched, Collections.emptyList(),
+                  Collections.emptyList());
+            default:
+              throw new UnsupportedOperationException("Not supported by the harness: " + method);
+          }
+        });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> List<T> find(Query query, Class<T> entityClass, String collectionName) {
+    if (entityClass == ProductView.class) {
+      Document filter = query.getQueryObject();
+      if (filter.containsKey("$text"))
+        throw new UnsupportedOperationException("Not supported by the harness: " + query);
+
+      int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+      Comparator<Product> order = createOrder(query.getSortObject());
+      List<Product> products = order == null
+          ? store.findMatching(product -> matches(filter, product), limit)
+          : store.findMatching(product -> matches(filter, product), Integer.MAX_VALUE).stream()
+              .sorted(order)
+              .limit(limit)
+              .collect(Collectors.toList());
+      return products.stream()
+          .map(product -> (T) new ProductView(product))
+          .collect(Collectors.toList());
+    }
+
+    Collection<?> productIds = query.getQueryObject().get("_id", Document.class).get("$in", Collection.class);
+    return productIds.stream()
+        .map(id -> store.findEntry((ObjectId) id)
+            .map(entry -> new Document("_id", id).append("qty", entry.getProduct().getQty())
+                .append(RESERVATIONS_FIELD, entry.getReservations())))
+        .filter(Optional::isPresent)
+        .map(document -> (T) document.get())
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> CloseableIterator<T> stream(Query query, Class<T> entityType, String collectionName) {
+    Iterator<Product> products = store.findAll().iterator();
+    return new CloseableIterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return products.hasNext();
+      }
+
+      @Override
+      public T next() {
+        Product product = products.next();
+        return (T) (entityType == ProductSuggestion.class ? new ProductSuggestion(product) : new ProductView(product));
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  @Override
+  public <T> T insert(T objectToSave) {
+    String id = ((ProcessedMessage) objectToSave).getId();
+    if (!processedMessages.add(id))
+      throw new DuplicateKeyException("Duplicate processed message: " + id);
+    return objectToSave;
+  }
+
+  @Override
+  public boolean exists(Query query, Class<?> entityClass) {
+    return processedMessages.contains(query.getQueryObject().getString("_id"));
+  }
+
+  @Override
+  public UpdateResult updateMulti(Query query, UpdateDefinition update, Class<?> entityClass) {
+    Collection<?> productIds = query.getQueryObject().get("_id", Document.class).get("$in", Collection.class);
+    Collection<?> cleared = update.getUpdateObject().get("$pullAll", Document.class)
+        .get(RESERVATIONS_FIELD, Collection.class);
+    long modified = productIds.stream()
+        .filter(id -> store.update((ObjectId) id, entry -> {
+          List<String> reservations = entry.getReservations().stream()
+              .filter(reservation -> !cleared.contains(reservation))
+              .collect(Collectors.toList());
+          return reservations.size() == entry.getReservations().size() ? entry : entry.withQty(0, reservations);
+        }))
+        .count();
+    return UpdateResult.acknowledged(productIds.size(), modified, null);
+  }
+
+  /**
+   * Creates the order of a sort document.
+   * 
+   * @param sort the sort document of a query.
+   * @return the {@link Comparator} of the sort, or {@code null} if products are
+   *         sorted by ID, the order of the store.
+   */
+  private static Comparator<Product> createOrder(Document sort) {
+    if (sort.isEmpty() || sort.keySet().equals(Set.of("id")) || sort.keySet().equals(Set.of("_id")))
+      return null;
+
+    Comparator<Product> order = null;
+    for (String field : sort.keySet()) {
+      int direction = ((Number) sort.get(field)).intValue();
+      Comparator<Product> fieldOrder = (first, second) -> direction
+          * compare(getValue(first, field), getValue(second, field));
+      order = order == null ? fieldOrder : order.thenComparing(fieldOrder);
+    }
+
+    return order;
+  }
+
+  /**
+   * Checks whether a product matches a query document the way the database
+   * would, for the operators the page queries use.
+   * 
+   * @param query   the query document.
+   * @param product the {@link Product} to check.
+   * @return {@code true} if the product matches every condition.
+   */
+  @SuppressWarnings("unchecked")
+  private static boolean matches(Document query, Product product) {
+    for (Map.Entry<String, Object> condition : query.entrySet()) {
+      String field = condition.getKey();
+      if (field.equals("$and") || field.equals("$or")) {
+        Stream<Document> operands = ((List<Document>) condition.getValue()).stream();
+        if (field.equals("$and")
+            ? !operands.allMatch(operand -> matches(operand, product))
+            : operands.noneMatch(operand -> matches(operand, product)))
+          return false;
+        continue;
+      }
+
+      Object value = getValue(product, field);
+      if (!(condition.getValue() instanceof Document)) {
+        if (compare(value, condition.getValue()) != 0)
+          return false;
+        continue;
+      }
+
+      for (Map.Entry<String, Object> operator : ((Document) condition.getValue()).entrySet()) {
+        int comparison = compare(value, operator.getValue());
+        boolean matched;
+        switch (operator.getKey()) {
+          case "$gt":
+            matched = comparison > 0;
+            break;
+          case "$gte":
+            matched = comparison >= 0;
+            break;
+          case "$lt":
+            matched = comparison < 0;
+            break;
+          case "$lte":
+            matched = comparison <= 0;
+            break;
+          default:
+            throw new UnsupportedOperationException("Not supported by the harness: " + operator.getKey());
+        }
+
+        if (!matched)
+          return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the value of a queried field of a product.
+   * 
+   * @param product the {@link Product}.
+   * @param field   the name of the field.
+   * @return the value of the field.
+   */
+  private static Object getValue(Product product, String field) {
+    switch (field) {
+      case "id":
+      case "_id":
+        return product.getId();
+      case "name":
+        return product.getName();
+      case "category":
+        return product.getCategory();
+      case "price":
+        return product.getPrice();
+      case "qty":
+        return product.getQty();
+      default:
+        throw new UnsupportedOperationException("Not supported by the harness: " + field);
+    }
+  }
+
+  /**
+   * Compares two values of a field, with enums compared by name as they are
+   * stored.
+   * 
+   * @param value the value of the product.
+   * @param other the value of the query.
+   * @return the comparison of the values.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compare(Object value, Object other) {
+    Object left = value instanceof Enum ? ((Enum<?>) value).name() : value;
+    Object right = other instanceof Enum ? ((Enum<?>) other).name() : other;
+    return ((Comparable) left).compareTo(right);
+  }
+
+  /**
+   * Applies a single update of a bulk write the way the database would.
+   * 
+   * @param query  the query document of the update.
+   * @param update the update document.
+   * @return {@code true} if the query matched the product.
+   */
+  private boolean apply(Document query, Document update) {
+    return store.update(query.getObjectId("_id"), entry -> {
+      Document qtyGuard = query.get("qty", Document.class);
+      if (qtyGuard != null && entry.getProduct().getQty() < qtyGuard.getInteger("$gte"))
+        return entry;
+
+      Object tagGuard = query.get(RESERVATIONS_FIELD);
+      if (tagGuard instanceof Document
+          ? entry.getReservations().contains(((Document) tagGuard).getString("$ne"))
+          : tagGuard != null && !entry.getReservations().contains(tagGuard))
+        return entry;
+      if (query.keySet().stream().anyMatch(key -> key.startsWith(RESERVATIONS_FIELD + ".")
+          && entry.getReservations().size() > Integer.parseInt(key.substring(RESERVATIONS_FIELD.length() + 1))))
+        return entry;
+
+      List<String> reservations = new ArrayList<>(entry.getReservations());
+      Document push = update.get("$push", Document.class);
+      if (push != null)
+        reservations.add(push.getString(RESERVATIONS_FIELD));
+      Document pull = update.get("$pull", Document.class);
+      if (pull != null)
+        reservations.remove(pull.getString(RESERVATIONS_FIELD));
+
+      return entry.withQty(update.get("$inc", Document.class).getInteger("qty"), reservations);
+    });
+  }
+}
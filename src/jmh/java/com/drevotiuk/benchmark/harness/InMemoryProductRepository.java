@@ -0,0 +1,72 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.repository.ProductRepository;
+
+/**
+ * Creates a {@link ProductRepository} backed by an
+ * {@link InMemoryProductStore}.
+ * <p>
+ * Only the methods called by the services are implemented; any other call
+ * fails, so that a new repository dependency is noticed instead of being
+ * measured against a silent no-op.
+ * </p>
+ */
+public final class InMemoryProductRepository {
+  private InMemoryProductRepository() {
+  }
+
+  /**
+   * Creates the repository.
+   * 
+   * @param store the {@link InMemoryProductStore} holding the products.
+   * @return a {@link ProductRepository} proxy.
+   */
+  public static ProductRepository create(InMemoryProductStore store) {
+    return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+        new Class<?>[] { ProductRepository.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "findById":
+              return store.findById((ObjectId) args[0]);
+            case "findViewById":
+              return store.findById((ObjectId) args[0]).map(ProductView::new);
+            case "findViewsByIdIn":
+              List<ProductView> views = new ArrayList<>();
+              ((Iterable<?>) args[0]).forEach(id -> store.findById((ObjectId) id).map(ProductView::new)
+                  .ifPresent(views::add));
+              return views;
+            case "findViewsByIdGreaterThan":
+              return store.findAfter((ObjectId) args[0], ((Pageable) args[1]).getPageSize()).stream()
+                  .map(ProductView::new)
+                  .collect(Collectors.toList());
+            case "existsById":
+              return store.findEntry((ObjectId) args[0]).isPresent();
+            case "existsByName":
+              return store.existsByName((String) args[0]);
+            case "save":
+              store.save((Product) args[0]);
+              return args[0];
+            case "deleteById":
+              store.delete((ObjectId) args[0]);
+              return null;
+            case "toString":
+              return "InMemoryProductRepository";
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              throw new UnsupportedOperationException("Not supported by the harness: " + method);
+          }
+        });
+  }
+}
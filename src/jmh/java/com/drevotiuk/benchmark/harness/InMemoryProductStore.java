@@ -0,0 +1,150 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+
+import com.drevotiuk.model.Product;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Thread-safe in-memory stand-in for the products collection.
+ * <p>
+ * Every product is stored as an immutable {@link Entry} that is replaced
+ * atomically on update, together with the reservation tags that the stock
+ * updates keep next to the mapped fields. Callers always receive copies, so
+ * services mutating returned products do not affect the store.
+ * </p>
+ */
+public class InMemoryProductStore {
+  private final Map<ObjectId, Entry> entries = new ConcurrentHashMap<>();
+  private final NavigableSet<ObjectId> ids = new ConcurrentSkipListSet<>();
+
+  /**
+   * Inserts or replaces a product, keeping its reservation tags.
+   * 
+   * @param product the {@link Product} to save.
+   */
+  public void save(Product product) {
+    Product copy = copy(product);
+    entries.compute(copy.getId(), (id, entry) -> new Entry(copy,
+        entry == null ? Collections.emptyList() : entry.getReservations()));
+    ids.add(copy.getId());
+  }
+
+  /**
+   * Atomically replaces the entry of a product.
+   * 
+   * @param productId the ID of the product.
+   * @param update    a function returning the new entry, or the given one to
+   *                  leave it unchanged.
+   * @return {@code true} if the product exists and the entry was replaced.
+   */
+  public boolean update(ObjectId productId, UnaryOperator<Entry> update) {
+    boolean[] updated = new boolean[1];
+    entries.computeIfPresent(productId, (id, entry) -> {
+      Entry next = update.apply(entry);
+      updated[0] = next != entry;
+      return next;
+    });
+    return updated[0];
+  }
+
+  public Optional<Product> findById(ObjectId productId) {
+    return Optional.ofNullable(entries.get(productId)).map(entry -> copy(entry.getProduct()));
+  }
+
+  public Optional<Entry> findEntry(ObjectId productId) {
+    return Optional.ofNullable(entries.get(productId));
+  }
+
+  public List<Product> findAll() {
+    return findAfter(new ObjectId(new byte[12]), Integer.MAX_VALUE);
+  }
+
+  public List<Product> findAfter(ObjectId after, int limit) {
+    List<Product> products = new ArrayList<>();
+    for (ObjectId id : ids.tailSet(after, false)) {
+      if (products.size() == limit)
+        break;
+
+      findById(id).ifPresent(products::add);
+    }
+
+    return products;
+  }
+
+  /**
+   * Finds products matching a predicate in ascending ID order.
+   * 
+   * @param predicate the predicate the products must match.
+   * @param limit     the maximum number of products.
+   * @return a {@link List} of copies of the matching products.
+   */
+  public List<Product> findMatching(Predicate<Product> predicate, int limit) {
+    List<Product> products = new ArrayList<>();
+    for (ObjectId id : ids) {
+      if (products.size() == limit)
+        break;
+
+      Entry entry = entries.get(id);
+      if (entry != null && predicate.test(entry.getProduct()))
+        products.add(copy(entry.getProduct()));
+    }
+
+    return products;
+  }
+
+  public boolean existsByName(String name) {
+    return entries.values().stream().anyMatch(entry -> entry.getProduct().getName().equals(name));
+  }
+
+  public void delete(ObjectId productId) {
+    entries.remove(productId);
+    ids.remove(productId);
+  }
+
+  public List<ObjectId> ids() {
+    return ids.stream().collect(Collectors.toList());
+  }
+
+  private static Product copy(Product product) {
+    return new Product(product.getId(), product.getName(), product.getCategory(), product.getPrice(),
+        product.getQty());
+  }
+
+  /**
+   * An immutable stored product with its reservation tags.
+   */
+  @AllArgsConstructor
+  @Getter
+  public static class Entry {
+    private final Product product;
+    private final List<String> reservations;
+
+    /**
+     * Creates an entry with a changed quantity.
+     * 
+     * @param delta        the quantity change.
+     * @param reservations the new reservation tags.
+     * @return the changed {@link Entry}.
+     */
+    public Entry withQty(int delta, List<String> reservations) {
+      Product changed = copy(product);
+      changed.setQty(product.getQty() + delta);
+      return new Entry(changed, reservations);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+/**
+ * {@link RabbitTemplate} stand-in that converts outgoing messages like the real
+ * one and then drops them.
+ * <p>
+ * Replies and change broadcasts are therefore measured up to the point where
+ * they would be written to the broker.
+ * </p>
+ */
+public class InMemoryRabbitTemplate extends RabbitTemplate {
+  private final LongAdder sent = new LongAdder();
+
+  public InMemoryRabbitTemplate() {
+    setMessageConverter(new Jackson2JsonMessageConverter());
+  }
+
+  @Override
+  public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+    sent.increment();
+  }
+
+  public long getSent() {
+    return sent.sum();
+  }
+}
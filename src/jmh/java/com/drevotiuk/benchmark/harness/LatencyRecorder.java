@@ -0,0 +1,86 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.util.Arrays;
+
+/**
+ * Records operation latencies of a single worker thread.
+ * <p>
+ * Latencies are kept in a growing array and merged after the run, so
+ * recording does not synchronize or allocate per operation.
+ * </p>
+ */
+public class LatencyRecorder {
+  private long[] latencies;
+  private int count;
+  private int errors;
+
+  public LatencyRecorder() {
+    this(1 << 16);
+  }
+
+  /**
+   * Creates a recorder expecting few operations, such as the one of a single
+   * connection among many.
+   * 
+   * @param initialCapacity the number of latencies recorded before the array
+   *                        grows.
+   */
+  public LatencyRecorder(int initialCapacity) {
+    latencies = new long[Math.max(1, initialCapacity)];
+  }
+
+  public void record(long latencyNanos) {
+    if (count == latencies.length)
+      latencies = Arrays.copyOf(latencies, count * 2);
+    latencies[count++] = latencyNanos;
+  }
+
+  public void recordError() {
+    errors++;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public int getErrors() {
+    return errors;
+  }
+
+  /**
+   * Merges the latencies of several recorders into one sorted array.
+   * 
+   * @param recorders the {@link LatencyRecorder} objects to merge.
+   * @return the sorted latencies in nanoseconds.
+   */
+  public static long[] merge(Iterable<LatencyRecorder> recorders) {
+    int total = 0;
+    for (LatencyRecorder recorder : recorders)
+      total += recorder.count;
+
+    long[] merged = new long[total];
+    int offset = 0;
+    for (LatencyRecorder recorder : recorders) {
+      System.arraycopy(recorder.latencies, 0, merged, offset, recorder.count);
+      offset += recorder.count;
+    }
+
+    Arrays.sort(merged);
+    return merged;
+  }
+
+  /**
+   * Returns a percentile of sorted latencies.
+   * 
+   * @param sorted     the sorted latencies.
+   * @param percentile the percentile between 0 and 100.
+   * @return the latency at the percentile, or 0 if there are none.
+   */
+  public static long percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0)
+      return 0;
+
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+}
@@ -0,0 +1,300 @@
+package com.drevotiuk.benchmark.harness;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import com.drevotiuk.GlobalExceptionHandler;
+import com.drevotiuk.config.VirtualThreadConfig;
+import com.drevotiuk.controller.ProductController;
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.repository.ProductRepository;
+import com.drevotiuk.service.CatalogSnapshot;
+import com.drevotiuk.service.ProductCache;
+import com.drevotiuk.service.ProductMetrics;
+import com.drevotiuk.service.ProductNameIndex;
+import com.drevotiuk.service.ProductReplica;
+import com.drevotiuk.service.ProductService;
+import com.drevotiuk.service.ProductServiceUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Load harness comparing the servlet container on platform and on virtual
+ * threads.
+ * <p>
+ * For every mode of {@code product.virtual-threads.enabled}, the product
+ * endpoints are started in an embedded Tomcat on a random port and product
+ * lookups are sent over real HTTP connections, each connection sending its
+ * next request as soon as the previous response arrives. Lookups bypass the
+ * product cache and read an in-memory repository that blocks for a fixed
+ * time per call, standing in for database I/O, so that the number of
+ * requests in flight is bounded by the request threads on platform threads
+ * only. The throughput and latency percentiles are reported for each mode.
+ * </p>
+ * <p>
+ * Settings are passed as {@code key=value} arguments, for example
+ * {@code connections=10000 db-latency=5 virtual-threads=false,true}. Virtual
+ * threads require Java 21, and 10k connections need a limit of open files
+ * above twice that number, as both ends run in this process.
+ * </p>
+ */
+public class ServerLoadHarness {
+  private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    DEFAULTS.put("connections", "10000");
+    DEFAULTS.put("warmup", "5");
+    DEFAULTS.put("seconds", "15");
+    DEFAULTS.put("products", "10000");
+    DEFAULTS.put("db-latency", "5");
+    DEFAULTS.put("client-threads", "8");
+    DEFAULTS.put("log", "WARN");
+    DEFAULTS.put("virtual-threads", "false,true");
+  }
+
+  private final Map<String, String> settings;
+  private final InMemoryProductStore store = new InMemoryProductStore();
+  private List<ObjectId> productIds;
+
+  public ServerLoadHarness(Map<String, String> settings) {
+    this.settings = settings;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> settings = new HashMap<>(DEFAULTS);
+    Arrays.stream(args)
+        .flatMap(arg -> Arrays.stream(arg.trim().split("\\s+")))
+        .filter(arg -> arg.contains("="))
+        .forEach(arg -> settings.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1)));
+    ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+        .setLevel(Level.toLevel(settings.get("log")));
+
+    ServerLoadHarness harness = new ServerLoadHarness(settings);
+    harness.seed();
+    System.out.printf("%-15s %11s %10s %7s %12s %9s %9s %9s %9s %9s%n", "virtual-threads", "connections", "requests",
+        "errors", "requests/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+    for (String virtualThreads : settings.get("virtual-threads").split(","))
+      harness.run(Boolean.parseBoolean(virtualThreads.trim()));
+  }
+
+  /**
+   * Fills the store with products of random categories and prices.
+   */
+  private void seed() {
+    int products = getInt("products");
+    ProductCategory[] categories = ProductCategory.values();
+    for (int i = 0; i < products; i++) {
+      store.save(new Product(ObjectId.get(), "Product " + i, categories[i % categories.length],
+          BigDecimal.valueOf(100 + ThreadLocalRandom.current().nextInt(100_000), 2), 1000));
+    }
+
+    productIds = store.ids();
+  }
+
+  /**
+   * Starts the server in a mode, loads it for the warmup period, then
+   * measures it and prints the results.
+   * 
+   * @param virtualThreads whether requests are processed on virtual threads.
+   * @throws Exception if the server cannot be started or loaded.
+   */
+  private void run(boolean virtualThreads) throws Exception {
+    int connections = getInt("connections");
+    ExecutorService clientExecutor = Executors.newFixedThreadPool(getInt("client-threads"));
+    try (ConfigurableApplicationContext context = startServer(virtualThreads, connections)) {
+      int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+      String baseUri = "http://localhost:" + port + "/api/v1/products/";
+      HttpClient client = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .connectTimeout(Duration.ofSeconds(30))
+          .executor(clientExecutor)
+          .build();
+
+      measure(client, baseUri, connections, getInt("warmup"));
+      List<LatencyRecorder> recorders = measure(client, baseUri, connections, getInt("seconds"));
+
+      long[] latencies = LatencyRecorder.merge(recorders);
+      int errors = recorders.stream().mapToInt(LatencyRecorder::getErrors).sum();
+      double seconds = getInt("seconds");
+      System.out.printf("%-15s %11d %10d %7d %12.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", virtualThreads, connections,
+          latencies.length, errors, latencies.length / seconds,
+          micros(LatencyRecorder.percentile(latencies, 50)), micros(LatencyRecorder.percentile(latencies, 90)),
+          micros(LatencyRecorder.percentile(latencies, 99)), micros(LatencyRecorder.percentile(latencies, 99.9)),
+          micros(LatencyRecorder.percentile(latencies, 100)));
+    } finally {
+      clientExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Starts the product endpoints in an embedded Tomcat on a random port.
+   * <p>
+   * The configuration files of the service are not read, so that no config
+   * server is contacted.
+   * </p>
+   * 
+   * @param virtualThreads whether requests are processed on virtual threads.
+   * @param connections    the number of connections the server must accept.
+   * @return the {@link ConfigurableApplicationContext} of the server.
+   */
+  private ConfigurableApplicationContext startServer(boolean virtualThreads, int connections) {
+    ProductService productService = createProductService();
+    return new SpringApplicationBuilder(Server.class)
+        .web(WebApplicationType.SERVLET)
+        .initializers(context -> context.getBeanFactory().registerSingleton("productService", productService))
+        .properties(
+            "spring.cloud.config.enabled=false",
+            "spring.main.banner-mode=off",
+            "server.port=0",
+            "server.tomcat.max-connections=" + connections,
+            "server.tomcat.accept-count=" + connections,
+            "server.tomcat.max-keep-alive-requests=-1",
+            "api.version=v1",
+            "product.virtual-threads.enabled=" + virtualThreads)
+        .run("--spring.config.name=server-load-harness");
+  }
+
+  /**
+   * Creates a {@link ProductService} reading products through a repository
+   * that blocks for the configured database latency on every call.
+   * 
+   * @return the {@link ProductService}.
+   */
+  private ProductService createProductService() {
+    ProductRepository repository = InMemoryProductRepository.create(store);
+    long latencyMillis = getInt("db-latency");
+    ProductRepository slowRepository = (ProductRepository) Proxy.newProxyInstance(
+        ProductRepository.class.getClassLoader(), new Class<?>[] { ProductRepository.class },
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() != Object.class)
+            Thread.sleep(latencyMillis);
+          try {
+            return method.invoke(repository, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+    InMemoryMongoTemplate mongoTemplate = new InMemoryMongoTemplate(store);
+    ProductMetrics metrics = new ProductMetrics(new SimpleMeterRegistry());
+    ProductReplica replica = new ProductReplica(mongoTemplate, new CatalogSnapshot("", Duration.ZERO), false,
+        Duration.ofSeconds(1), false);
+    return new ProductService(slowRepository, new ProductServiceUtils(), mongoTemplate,
+        new ProductCache(0, Duration.ofNanos(1)), new ProductNameIndex(mongoTemplate), replica, metrics);
+  }
+
+  /**
+   * Loads the server from all connections for the given time.
+   * 
+   * @param client      the {@link HttpClient} opening the connections.
+   * @param baseUri     the URI of the product endpoints.
+   * @param connections the number of connections.
+   * @param seconds     the duration of the run.
+   * @return the {@link LatencyRecorder} of each connection.
+   * @throws Exception if a connection fails unexpectedly.
+   */
+  private List<LatencyRecorder> measure(HttpClient client, String baseUri, int connections, int seconds)
+      throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    List<CompletableFuture<LatencyRecorder>> futures = new ArrayList<>(connections);
+    for (int i = 0; i < connections; i++) {
+      CompletableFuture<LatencyRecorder> finished = new CompletableFuture<>();
+      sendNext(client, baseUri, new LatencyRecorder(256), deadline, finished);
+      futures.add(finished);
+    }
+
+    List<LatencyRecorder> recorders = new ArrayList<>(connections);
+    for (CompletableFuture<LatencyRecorder> future : futures)
+      recorders.add(future.get());
+    return recorders;
+  }
+
+  /**
+   * Sends the next lookup of a connection, or completes it once the deadline
+   * has passed.
+   * 
+   * @param client   the {@link HttpClient} opening the connections.
+   * @param baseUri  the URI of the product endpoints.
+   * @param recorder the {@link LatencyRecorder} of the connection.
+   * @param deadline the {@link System#nanoTime()} at which the run ends.
+   * @param finished the future completed with the recorder after the run.
+   */
+  private void sendNext(HttpClient client, String baseUri, LatencyRecorder recorder, long deadline,
+      CompletableFuture<LatencyRecorder> finished) {
+    if (System.nanoTime() >= deadline) {
+      finished.complete(recorder);
+      return;
+    }
+
+    ObjectId productId = productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + productId.toHexString()))
+        .timeout(Duration.ofSeconds(30))
+        .build();
+    long start = System.nanoTime();
+    client.sendAsync(request, BodyHandlers.discarding()).whenComplete((response, error) -> {
+      if (error == null && response.statusCode() == 200)
+        recorder.record(System.nanoTime() - start);
+      else
+        recorder.recordError();
+      sendNext(client, baseUri, recorder, deadline, finished);
+    });
+  }
+
+  private int getInt(String key) {
+    return Integer.parseInt(settings.get(key));
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  /**
+   * The server configuration: the product endpoints and the virtual-thread
+   * mode, without the MongoDB and RabbitMQ clients.
+   */
+  @SpringBootConfiguration
+  @EnableAutoConfiguration(exclude = { MongoAutoConfiguration.class, MongoDataAutoConfiguration.class,
+      MongoRepositoriesAutoConfiguration.class, MongoReactiveAutoConfiguration.class,
+      MongoReactiveDataAutoConfiguration.class, MongoReactiveRepositoriesAutoConfiguration.class,
+      RabbitAutoConfiguration.class })
+  @Import({ ProductController.class, GlobalExceptionHandler.class, VirtualThreadConfig.class })
+  static class Server {
+  }
+}
@@ -0,0 +1,394 @@
+package com.drevotiuk.benchmark.harness;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.validation.Validation;
+
+import org.bson.types.ObjectId;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.drevotiuk.GlobalExceptionHandler;
+import com.drevotiuk.controller.ProductController;
+import com.drevotiuk.controller.ProductManagementController;
+import com.drevotiuk.model.OrderItem;
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.repository.ProductRepository;
+import com.drevotiuk.service.CatalogSnapshot;
+import com.drevotiuk.service.MessageDeduplicator;
+import com.drevotiuk.service.ProductCache;
+import com.drevotiuk.service.ProductChangeNotifier;
+import com.drevotiuk.service.ProductManagementService;
+import com.drevotiuk.service.ProductMetrics;
+import com.drevotiuk.service.ProductNameIndex;
+import com.drevotiuk.service.ProductReplica;
+import com.drevotiuk.service.ProductService;
+import com.drevotiuk.service.ProductServiceUtils;
+import com.drevotiuk.service.StockService;
+import com.drevotiuk.service.StripedExecutor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * End-to-end throughput harness for the service layer.
+ * <p>
+ * Wires the real controllers, services and listeners against in-memory
+ * stand-ins for MongoDB and RabbitMQ and drives them from a number of worker
+ * threads, either as fast as possible or at a fixed total rate. REST endpoints
+ * are called through {@link MockMvc}, listeners are invoked with messages
+ * converted the way the listener containers convert them. For every scenario
+ * the throughput and latency percentiles are reported; with a fixed rate,
+ * latency is measured from the intended start of each operation, so that
+ * stalls are not hidden by the workers falling behind.
+ * </p>
+ * <p>
+ * No servlet container or connection is involved, so the request thread model
+ * is measured by {@link ServerLoadHarness} instead.
+ * </p>
+ * <p>
+ * Settings are passed as {@code key=value} arguments, for example
+ * {@code threads=16 seconds=30 rate=5000 scenarios=rest-find,fetch-qty}.
+ * </p>
+ * <p>
+ * The {@code rest-find-filtered} scenario is not run by default: the
+ * in-memory store scans and sorts all products for a filtered page instead of
+ * using an index, so it measures the harness more than the service.
+ * </p>
+ */
+public class ThroughputHarness {
+  private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    DEFAULTS.put("threads", "8");
+    DEFAULTS.put("warmup", "5");
+    DEFAULTS.put("seconds", "15");
+    DEFAULTS.put("rate", "0");
+    DEFAULTS.put("products", "10000");
+    DEFAULTS.put("stock", "1000000000");
+    DEFAULTS.put("batch", "50");
+    DEFAULTS.put("order-items", "3");
+    DEFAULTS.put("log", "WARN");
+    DEFAULTS.put("scenarios", "rest-find,rest-find-all,total-price,fetch-qty,restore-qty");
+  }
+
+  private final Map<String, String> settings;
+  private final InMemoryProductStore store = new InMemoryProductStore();
+  private final InMemoryRabbitTemplate rabbitTemplate = new InMemoryRabbitTemplate();
+  private final Jackson2JsonMessageConverter messageConverter = new Jackson2JsonMessageConverter();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final StripedExecutor stripedExecutor = new StripedExecutor(0);
+  private final ProductService productService;
+  private final ProductManagementService managementService;
+  private final MockMvc mockMvc;
+  private List<ObjectId> productIds;
+
+  public ThroughputHarness(Map<String, String> settings) {
+    this.settings = settings;
+    ProductRepository repository = InMemoryProductRepository.create(store);
+    InMemoryMongoTemplate mongoTemplate = new InMemoryMongoTemplate(store);
+    ProductServiceUtils serviceUtils = new ProductServiceUtils();
+    ProductCache productCache = new ProductCache(10_000, Duration.ofMinutes(10));
+    ProductChangeNotifier changeNotifier = new ProductChangeNotifier(productCache, rabbitTemplate);
+    ProductMetrics metrics = new ProductMetrics(new SimpleMeterRegistry());
+    StockService stockService = new StockService(mongoTemplate, changeNotifier, stripedExecutor, metrics);
+    ReflectionTestUtils.setField(stockService, "atomicReservations", true);
+    ReflectionTestUtils.setField(stockService, "maxPendingReservations", 500);
+    MessageDeduplicator deduplicator = new MessageDeduplicator(mongoTemplate, Duration.ofHours(24), 100_000);
+
+    ProductNameIndex nameIndex = new ProductNameIndex(mongoTemplate);
+    ProductReplica replica = new ProductReplica(mongoTemplate, new CatalogSnapshot("", Duration.ZERO), false,
+        Duration.ofSeconds(1), false);
+
+    productService = new ProductService(repository, serviceUtils, mongoTemplate, productCache, nameIndex, replica,
+        metrics);
+    managementService = new ProductManagementService(repository, serviceUtils, mongoTemplate, objectMapper,
+        changeNotifier, nameIndex, stockService, rabbitTemplate, deduplicator,
+        Validation.buildDefaultValidatorFactory().getValidator());
+    mockMvc = MockMvcBuilders
+        .standaloneSetup(new ProductController(productService), new ProductManagementController(managementService))
+        .setControllerAdvice(new GlobalExceptionHandler())
+        .addPlaceholderValue("api.version", "v1")
+        .build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> settings = new HashMap<>(DEFAULTS);
+    Arrays.stream(args)
+        .flatMap(arg -> Arrays.stream(arg.trim().split("\\s+")))
+        .filter(arg -> arg.contains("="))
+        .forEach(arg -> settings.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1)));
+    ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+        .setLevel(Level.toLevel(settings.get("log")));
+
+    ThroughputHarness harness = new ThroughputHarness(settings);
+    try {
+      harness.seed();
+      System.out.printf("%-14s %7s %10s %7s %12s %12s %9s %9s %9s %9s %9s%n", "scenario", "threads", "ops",
+          "errors", "ops/s", "messages/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+      for (String scenario : settings.get("scenarios").split(","))
+        harness.run(scenario.trim());
+    } finally {
+      harness.stripedExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Fills the store with products of random categories and prices.
+   */
+  private void seed() {
+    int products = getInt("products");
+    int stock = getInt("stock");
+    ProductCategory[] categories = ProductCategory.values();
+    for (int i = 0; i < products; i++) {
+      store.save(new Product(ObjectId.get(), "Product " + i, categories[i % categories.length],
+          BigDecimal.valueOf(100 + ThreadLocalRandom.current().nextInt(100_000), 2), stock));
+    }
+
+    productIds = store.ids();
+  }
+
+  /**
+   * Runs a scenario for the warmup period, then measures it and prints the
+   * results.
+   * 
+   * @param name the name of the scenario.
+   * @throws Exception if the scenario cannot be run.
+   */
+  private void run(String name) throws Exception {
+    Scenario<?> scenario = createScenario(name);
+    int threads = getInt("threads");
+    measure(scenario, threads, getInt("warmup"));
+    List<LatencyRecorder> recorders = measure(scenario, threads, getInt("seconds"));
+
+    long[] latencies = LatencyRecorder.merge(recorders);
+    int errors = recorders.stream().mapToInt(LatencyRecorder::getErrors).sum();
+    double seconds = getInt("seconds");
+    System.out.printf("%-14s %7d %10d %7d %12.1f %12.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, threads,
+        latencies.length, errors, latencies.length / seconds,
+        latencies.length * (double) scenario.getMessagesPerOperation() / seconds,
+        micros(LatencyRecorder.percentile(latencies, 50)), micros(LatencyRecorder.percentile(latencies, 90)),
+        micros(LatencyRecorder.percentile(latencies, 99)), micros(LatencyRecorder.percentile(latencies, 99.9)),
+        micros(LatencyRecorder.percentile(latencies, 100)));
+  }
+
+  /**
+   * Drives a scenario from the worker threads for the given time.
+   * 
+   * @param scenario the {@link Scenario} to run.
+   * @param threads  the number of worker threads.
+   * @param seconds  the duration of the run.
+   * @return the {@link LatencyRecorder} of each worker.
+   * @throws Exception if a worker fails unexpectedly.
+   */
+  private <T> List<LatencyRecorder> measure(Scenario<T> scenario, int threads, int seconds) throws Exception {
+    long rate = getInt("rate");
+    long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(threads) / rate : 0;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<LatencyRecorder>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(workers.submit(() -> {
+          LatencyRecorder recorder = new LatencyRecorder();
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          long intendedStart = System.nanoTime() + random.nextLong(Math.max(1, intervalNanos));
+          while (intendedStart < deadline) {
+            T input = scenario.prepare(random);
+            if (intervalNanos > 0)
+              LockSupport.parkNanos(intendedStart - System.nanoTime());
+            long start = intervalNanos > 0 ? intendedStart : System.nanoTime();
+            try {
+              scenario.execute(input);
+              recorder.record(System.nanoTime() - start);
+            } catch (Exception e) {
+              recorder.recordError();
+            }
+
+            intendedStart = intervalNanos > 0 ? intendedStart + intervalNanos : System.nanoTime();
+          }
+
+          return recorder;
+        }));
+      }
+
+      List<LatencyRecorder> recorders = new ArrayList<>();
+      for (Future<LatencyRecorder> future : futures)
+        recorders.add(future.get());
+      return recorders;
+    } finally {
+      workers.shutdown();
+    }
+  }
+
+  /**
+   * Creates a scenario by its name.
+   * 
+   * @param name the name of the scenario.
+   * @return the {@link Scenario}.
+   * @throws IllegalArgumentException if there is no such scenario.
+   */
+  private Scenario<?> createScenario(String name) {
+    switch (name) {
+      case "rest-find":
+        return Scenario.of(random -> get("/api/v1/products/{productId}", randomProductId(random)), this::perform);
+      case "rest-find-all":
+        return Scenario.of(random -> get("/api/v1/products").param("limit", "20"), this::perform);
+      case "rest-find-filtered":
+        return Scenario.of(random -> get("/api/v1/products").param("limit", "20")
+            .param("category", ProductCategory.values()[random.nextInt(ProductCategory.values().length)].name())
+            .param("minPrice", "100").param("inStock", "true").param("sort", "PRICE"), this::perform);
+      case "total-price":
+        return Scenario.of(random -> createMessage(new OrderItem(randomProductId(random).toHexString(), 1),
+            OrderItem.class), message -> rabbitTemplate.convertAndSend("", "total-price-reply",
+                productService.consumeAndProduceTotalPrice((OrderItem) messageConverter.fromMessage(message))));
+      case "fetch-qty":
+        return Scenario.of(this::createOrderBatch, managementService::consumeFetchQty, getInt("batch"));
+      case "restore-qty":
+        return Scenario.of(this::createOrderBatch, managementService::consumeRestoreQty, getInt("batch"));
+      default:
+        throw new IllegalArgumentException("Unknown scenario: " + name);
+    }
+  }
+
+  private void perform(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult result = mockMvc.perform(request).andReturn();
+    if (result.getResponse().getStatus() != 200)
+      throw new IllegalStateException("Unexpected status: " + result.getResponse().getStatus());
+  }
+
+  /**
+   * Creates a batch of quantity messages, each with a unique ID and an order of
+   * random products, as delivered by a batch listener container.
+   * 
+   * @param random the random number generator of the worker.
+   * @return a {@link List} of {@link Message} objects.
+   */
+  private List<Message> createOrderBatch(ThreadLocalRandom random) {
+    int orderItems = getInt("order-items");
+    return IntStream.range(0, getInt("batch"))
+        .mapToObj(i -> {
+          List<OrderItem> items = IntStream.range(0, 1 + random.nextInt(orderItems))
+              .mapToObj(item -> new OrderItem(randomProductId(random).toHexString(), 1))
+              .collect(Collectors.toList());
+          Message message = createMessage(items, List.class);
+          message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
+          return message;
+        })
+        .collect(Collectors.toList());
+  }
+
+  private Message createMessage(Object payload, Class<?> inferredType) {
+    MessageProperties properties = new MessageProperties();
+    Message message = messageConverter.toMessage(payload, properties);
+    message.getMessageProperties().setInferredArgumentType(inferredType);
+    return message;
+  }
+
+  private ObjectId randomProductId(ThreadLocalRandom random) {
+    return productIds.get(random.nextInt(productIds.size()));
+  }
+
+  private int getInt(String key) {
+    return Integer.parseInt(settings.get(key));
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  /**
+   * A unit of work driven by the harness.
+   * 
+   * @param <T> the type of the prepared input of an operation.
+   */
+  private interface Scenario<T> {
+    /**
+     * Prepares the input of an operation; not included in the latency.
+     * 
+     * @param random the random number generator of the worker.
+     * @return the input of the operation.
+     * @throws Exception if the input cannot be prepared.
+     */
+    T prepare(ThreadLocalRandom random) throws Exception;
+
+    /**
+     * Executes an operation; its duration is recorded as the latency.
+     * 
+     * @param input the prepared input.
+     * @throws Exception if the operation fails, counted as an error.
+     */
+    void execute(T input) throws Exception;
+
+    /**
+     * Returns the number of messages handled by a single operation.
+     * 
+     * @return the number of messages, 1 for REST calls and single messages.
+     */
+    default int getMessagesPerOperation() {
+      return 1;
+    }
+
+    static <T> Scenario<T> of(Preparation<T> preparation, Execution<T> execution) {
+      return of(preparation, execution, 1);
+    }
+
+    static <T> Scenario<T> of(Preparation<T> preparation, Execution<T> execution, int messagesPerOperation) {
+      return new Scenario<T>() {
+        @Override
+        public T prepare(ThreadLocalRandom random) throws Exception {
+          return preparation.prepare(random);
+        }
+
+        @Override
+        public void execute(T input) throws Exception {
+          execution.execute(input);
+        }
+
+        @Override
+        public int getMessagesPerOperation() {
+          return messagesPerOperation;
+        }
+      };
+    }
+  }
+
+  @FunctionalInterface
+  private interface Preparation<T> {
+    T prepare(ThreadLocalRandom random) throws Exception;
+  }
+
+  @FunctionalInterface
+  private interface Execution<T> {
+    void execute(T input) throws Exception;
+  }
+}
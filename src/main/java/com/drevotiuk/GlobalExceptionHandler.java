@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import com.drevotiuk.model.exception.ProductNotFoundException;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
 import com.drevotiuk.model.exception.InvalidQuantityException;
 import com.drevotiuk.model.exception.ProductExistsException;
 
@@ -90,6 +91,19 @@ public class GlobalExceptionHandler {
     return buildErrorResponse(e, HttpStatus.BAD_REQUEST);
   }
 
+  /**
+   * Handles the {@link InvalidPageRequestException}.
+   * 
+   * @param e the {@link InvalidPageRequestException} thrown when invalid page
+   *          cursor or limit provided
+   * @return a ResponseEntity containing a standardized error response
+   */
+  @ExceptionHandler(InvalidPageRequestException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ResponseEntity<Map<String, String>> handleInvalidPageRequestException(InvalidPageRequestException e) {
+    return buildErrorResponse(e, HttpStatus.BAD_REQUEST);
+  }
+
   /**
    * Handles the {@link ProductExistsException}.
    * 
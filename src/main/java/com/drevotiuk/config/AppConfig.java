@@ -7,15 +7,17 @@ import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Configuration class for setting up Spring application beans.
  * <p>
  * This configuration class defines beans for message conversion and AMQP
- * template.
+ * template, and enables scheduled tasks.
  * </p>
  */
 @Configuration
+@EnableScheduling
 public class AppConfig {
   /**
    * Creates a {@link MessageConverter} bean for converting messages to and from
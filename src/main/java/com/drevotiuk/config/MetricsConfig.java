@@ -0,0 +1,106 @@
+package com.drevotiuk.config;
+
+import java.util.Optional;
+
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Configuration class for application metrics.
+ * <p>
+ * HTTP endpoints are timed by Spring Boot as {@code http.server.requests}.
+ * This configuration enables {@link io.micrometer.core.annotation.Timed} on
+ * the RabbitMQ listeners and publishes per listener the number of active
+ * consumers and the depth of the consumed queues. Consumer utilisation is the
+ * time spent in a listener per consumer, for example
+ * {@code rate(product_listener_seconds_sum[1m]) / product_listener_consumers}.
+ * </p>
+ */
+@Configuration
+@Slf4j
+public class MetricsConfig {
+  /**
+   * Defines a {@link TimedAspect} bean that times methods annotated with
+   * {@link io.micrometer.core.annotation.Timed}.
+   * 
+   * @param registry the {@link MeterRegistry} to record the timings in.
+   * @return a {@link TimedAspect} instance.
+   */
+  @Bean
+  public TimedAspect timedAspect(MeterRegistry registry) {
+    return new TimedAspect(registry);
+  }
+
+  /**
+   * Defines an {@link ApplicationListener} bean that registers consumer and
+   * queue depth gauges for every listener container once the containers are
+   * started.
+   * 
+   * @param registry         the {@link MeterRegistry} to register the gauges in.
+   * @param endpointRegistry the registry of the listener containers.
+   * @param amqpAdmin        the {@link AmqpAdmin} used to look up queue depths.
+   * @return an {@link ApplicationListener} of {@link ApplicationReadyEvent}.
+   */
+  @Bean
+  public ApplicationListener<ApplicationReadyEvent> listenerMetricsBinder(MeterRegistry registry,
+      RabbitListenerEndpointRegistry endpointRegistry, AmqpAdmin amqpAdmin) {
+    return event -> endpointRegistry.getListenerContainers().stream()
+        .filter(SimpleMessageListenerContainer.class::isInstance)
+        .map(SimpleMessageListenerContainer.class::cast)
+        .forEach(container -> bindListenerMetrics(registry, container, amqpAdmin));
+  }
+
+  /**
+   * Registers the gauges of a single listener container.
+   * 
+   * @param registry  the {@link MeterRegistry} to register the gauges in.
+   * @param container the {@link SimpleMessageListenerContainer} to observe.
+   * @param amqpAdmin the {@link AmqpAdmin} used to look up queue depths.
+   */
+  private void bindListenerMetrics(MeterRegistry registry, SimpleMessageListenerContainer container,
+      AmqpAdmin amqpAdmin) {
+    String listener = container.getListenerId();
+    Gauge.builder("product.listener.consumers", container, SimpleMessageListenerContainer::getActiveConsumerCount)
+        .description("Active consumers of a listener container")
+        .tag("listener", listener)
+        .register(registry);
+    for (String queue : container.getQueueNames()) {
+      Gauge.builder("product.listener.queue.depth", amqpAdmin, admin -> getQueueDepth(admin, queue))
+          .description("Messages ready in a consumed queue")
+          .tag("listener", listener)
+          .tag("queue", queue)
+          .register(registry);
+    }
+  }
+
+  /**
+   * Looks up the number of messages ready in a queue.
+   * 
+   * @param amqpAdmin the {@link AmqpAdmin} to query the broker with.
+   * @param queue     the name of the queue.
+   * @return the number of ready messages, or {@link Double#NaN} if unknown.
+   */
+  private static double getQueueDepth(AmqpAdmin amqpAdmin, String queue) {
+    try {
+      return Optional.ofNullable(amqpAdmin.getQueueInfo(queue))
+          .map(QueueInformation::getMessageCount)
+          .map(Integer::doubleValue)
+          .orElse(Double.NaN);
+    } catch (RuntimeException e) {
+      log.debug("Cannot look up depth of queue {}", queue, e);
+      return Double.NaN;
+    }
+  }
+}
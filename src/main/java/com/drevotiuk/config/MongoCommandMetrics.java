@@ -0,0 +1,203 @@
+package com.drevotiuk.config;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MongoDB {@link CommandListener} recording command latencies and logging
+ * slow commands.
+ * <p>
+ * Every command is timed as {@code product.mongo.commands}, tagged with the
+ * command name, the collection and the outcome. Commands slower than the
+ * threshold are logged with the shape of their filter, where all values are
+ * replaced by {@code ?}, so that queries missing an index can be recognised
+ * without logging the data they carry.
+ * </p>
+ */
+@Slf4j
+public class MongoCommandMetrics implements CommandListener {
+  private static final String NO_COLLECTION = "none";
+  private static final BsonString PLACEHOLDER = new BsonString("?");
+
+  private final MeterRegistry registry;
+  private final Duration slowCommandThreshold;
+  private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the listener.
+   * 
+   * @param registry             the {@link MeterRegistry} to record the
+   *                             latencies in.
+   * @param slowCommandThreshold the duration after which a command is logged,
+   *                             or zero to disable the slow command log.
+   */
+  public MongoCommandMetrics(MeterRegistry registry, Duration slowCommandThreshold) {
+    this.registry = registry;
+    this.slowCommandThreshold = slowCommandThreshold;
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    BsonDocument command = event.getCommand();
+    String shape = slowCommandThreshold.isZero() ? null : shapeOf(event.getCommandName(), command);
+    startedCommands.put(event.getRequestId(), new StartedCommand(collectionOf(event.getCommandName(), command), shape));
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    record(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), "success");
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    record(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), "failure");
+  }
+
+  /**
+   * Records the latency of a completed command and logs it if it was slow.
+   * 
+   * @param requestId    the request ID of the command.
+   * @param commandName  the name of the command.
+   * @param elapsedNanos the duration of the command in nanoseconds.
+   * @param status       the outcome of the command.
+   */
+  private void record(int requestId, String commandName, long elapsedNanos, String status) {
+    StartedCommand started = startedCommands.remove(requestId);
+    String collection = started == null ? NO_COLLECTION : started.getCollection();
+    Timer.builder("product.mongo.commands")
+        .description("Latency of MongoDB commands")
+        .tag("command", commandName)
+        .tag("collection", collection)
+        .tag("status", status)
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+    if (started != null && !slowCommandThreshold.isZero() && elapsedNanos > slowCommandThreshold.toNanos()) {
+      log.warn("Slow MongoDB command {} on {} took {} ms: {}", commandName, collection,
+          TimeUnit.NANOSECONDS.toMillis(elapsedNanos), started.getShape());
+    }
+  }
+
+  /**
+   * Determines the collection a command operates on.
+   * 
+   * @param commandName the name of the command.
+   * @param command     the command document.
+   * @return the name of the collection, or {@value #NO_COLLECTION} for
+   *         commands not targeting a collection.
+   */
+  static String collectionOf(String commandName, BsonDocument command) {
+    BsonValue collection = "getMore".equals(commandName)
+        ? command.get("collection")
+        : command.get(commandName);
+    return collection != null && collection.isString() ? collection.asString().getValue() : NO_COLLECTION;
+  }
+
+  /**
+   * Extracts the shape of the filter of a command.
+   * 
+   * @param commandName the name of the command.
+   * @param command     the command document.
+   * @return the filter shape as JSON, or {@code null} if the command has no
+   *         filter.
+   */
+  static String shapeOf(String commandName, BsonDocument command) {
+    switch (commandName) {
+      case "find":
+        return toJson(command.get("filter"), command.get("sort"));
+      case "count":
+      case "distinct":
+      case "findAndModify":
+        return toJson(command.get("query"), command.get("sort"));
+      case "aggregate":
+        return toJson(command.get("pipeline"), null);
+      case "update":
+        return toJson(firstStatementField(command, "updates", "q"), null);
+      case "delete":
+        return toJson(firstStatementField(command, "deletes", "q"), null);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Replaces every value of a filter with a placeholder, keeping field names,
+   * operators and the nesting of documents.
+   * 
+   * @param value the filter or a value within it.
+   * @return the shape of the value.
+   */
+  static BsonValue shape(BsonValue value) {
+    if (value.isDocument()) {
+      BsonDocument shape = new BsonDocument();
+      value.asDocument().forEach((key, nested) -> shape.put(key, shape(nested)));
+      return shape;
+    }
+
+    if (value.isArray()) {
+      BsonArray array = value.asArray();
+      boolean hasDocuments = array.stream().anyMatch(BsonValue::isDocument);
+      if (!hasDocuments)
+        return new BsonArray(Collections.singletonList(PLACEHOLDER));
+
+      BsonArray shape = new BsonArray();
+      array.forEach(nested -> shape.add(shape(nested)));
+      return shape;
+    }
+
+    return PLACEHOLDER;
+  }
+
+  private static BsonValue firstStatementField(BsonDocument command, String statements, String field) {
+    BsonValue value = command.get(statements);
+    if (value == null || !value.isArray() || value.asArray().isEmpty())
+      return null;
+
+    BsonValue statement = value.asArray().get(0);
+    return statement.isDocument() ? statement.asDocument().get(field) : null;
+  }
+
+  private static String toJson(BsonValue filter, BsonValue sort) {
+    if (filter == null)
+      return null;
+
+    BsonDocument shape = new BsonDocument("filter", shape(filter));
+    if (sort != null)
+      shape.put("sort", sort);
+    return shape.toJson();
+  }
+
+  /**
+   * The details of a started command needed once it completes.
+   */
+  @AllArgsConstructor
+  @Getter
+  private static class StartedCommand {
+    /** The collection the command operates on. */
+    private final String collection;
+
+    /** The filter shape of the command, or {@code null} if not captured. */
+    private final String shape;
+  }
+}
@@ -0,0 +1,119 @@
+package com.drevotiuk.config;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.Product;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component creating the indexes declared on the persistent entities.
+ * <p>
+ * Automatic index creation of Spring Data is disabled by default, so the
+ * indexes declared with annotations on {@link Product} are resolved and
+ * ensured once at startup. An existing index on the same keys that differs
+ * in uniqueness, such as a plain index left by an earlier version, is dropped
+ * and replaced. A unique index that cannot be created, for example over
+ * existing duplicates, prevents startup, as writes rely on it; a failure to
+ * create any other index is logged.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+  private final MongoTemplate mongoTemplate;
+
+  /**
+   * Ensures that the indexes declared on {@link Product} exist.
+   */
+  @PostConstruct
+  public void ensureIndexes() {
+    ensureIndexes(Product.class);
+  }
+
+  /**
+   * Ensures that the indexes declared on an entity class exist.
+   * 
+   * @param entityClass the entity class to create the indexes for.
+   */
+  private void ensureIndexes(Class<?> entityClass) {
+    IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+    IndexOperations indexOperations = mongoTemplate.indexOps(entityClass);
+    List<IndexInfo> existing = indexOperations.getIndexInfo();
+    resolver.resolveIndexFor(entityClass).forEach(index -> {
+      boolean unique = Boolean.TRUE.equals(index.getIndexOptions().get("unique"));
+      try {
+        dropConflictingIndexes(indexOperations, existing, index, unique);
+        String name = indexOperations.ensureIndex(index);
+        log.info("Ensured index {} of {}", name, entityClass.getSimpleName());
+      } catch (DataAccessException e) {
+        if (unique)
+          throw new IllegalStateException(String.format("Failed to create unique index %s of %s",
+              index.getIndexKeys(), entityClass.getSimpleName()), e);
+
+        log.error("Failed to create index {} of {}", index.getIndexKeys(), entityClass.getSimpleName(), e);
+      }
+    });
+  }
+
+  /**
+   * Drops the existing indexes on the keys of an index that differ from it in
+   * uniqueness, so that the index can be created.
+   * 
+   * @param indexOperations the {@link IndexOperations} of the collection.
+   * @param existing        the {@link IndexInfo} of the existing indexes.
+   * @param index           the {@link IndexDefinition} to create.
+   * @param unique          whether the index to create is unique.
+   */
+  private void dropConflictingIndexes(IndexOperations indexOperations, List<IndexInfo> existing,
+      IndexDefinition index, boolean unique) {
+    existing.stream()
+        .filter(info -> info.isUnique() != unique && hasKeys(info, index.getIndexKeys()))
+        .forEach(info -> {
+          log.warn("Replacing index {} of {}, it differs in uniqueness", info.getName(), index.getIndexKeys());
+          indexOperations.dropIndex(info.getName());
+        });
+  }
+
+  /**
+   * Checks whether an existing index is on the given keys, in the same order
+   * and direction.
+   * 
+   * @param info the {@link IndexInfo} of the existing index.
+   * @param keys the keys of an index to create, mapped to their directions.
+   * @return {@code true} if the existing index is on the same keys.
+   */
+  private static boolean hasKeys(IndexInfo info, Document keys) {
+    List<IndexField> fields = info.getIndexFields();
+    if (fields.size() != keys.size())
+      return false;
+
+    Iterator<Map.Entry<String, Object>> expected = keys.entrySet().iterator();
+    for (IndexField field : fields) {
+      Map.Entry<String, Object> key = expected.next();
+      if (field.getDirection() == null || !field.getKey().equals(key.getKey())
+          || !Integer.valueOf(field.getDirection() == Sort.Direction.ASC ? 1 : -1).equals(key.getValue()))
+        return false;
+    }
+
+    return true;
+  }
+}
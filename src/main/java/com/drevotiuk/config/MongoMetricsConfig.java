@@ -0,0 +1,46 @@
+package com.drevotiuk.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+
+/**
+ * Configuration class for MongoDB client metrics.
+ * <p>
+ * Registers a {@link MongoCommandMetrics} command listener and a connection
+ * pool listener on every MongoDB client created by Spring Boot: the blocking
+ * one and, with the "reactive" profile, the reactive one.
+ * </p>
+ */
+@Configuration
+public class MongoMetricsConfig {
+  @Value("${product.mongo.slow-command-threshold}")
+  private Duration slowCommandThreshold;
+
+  /**
+   * Defines a {@link MongoClientSettingsBuilderCustomizer} bean adding the
+   * command and connection pool listeners.
+   * <p>
+   * Pool metrics are published by Micrometer as
+   * {@code mongodb.driver.pool.*}, including the number of checked out
+   * connections and of threads waiting for one.
+   * </p>
+   * 
+   * @param registry the {@link MeterRegistry} to record the metrics in.
+   * @return a {@link MongoClientSettingsBuilderCustomizer} instance.
+   */
+  @Bean
+  public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry registry) {
+    MongoCommandMetrics commandMetrics = new MongoCommandMetrics(registry, slowCommandThreshold);
+    MongoMetricsConnectionPoolListener poolMetrics = new MongoMetricsConnectionPoolListener(registry);
+    return builder -> builder
+        .addCommandListener(commandMetrics)
+        .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(poolMetrics));
+  }
+}
@@ -0,0 +1,126 @@
+package com.drevotiuk.config;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.drevotiuk.config.RabbitListenerProperties.Container;
+
+/**
+ * Configuration class for RabbitMQ listener containers.
+ * <p>
+ * Defines a {@link SimpleRabbitListenerContainerFactory} per queue with its own
+ * concurrency and prefetch. The quantity queues additionally deliver messages
+ * to the listener in batches, so that a batch of orders is applied with a
+ * single database write.
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties(RabbitListenerProperties.class)
+public class RabbitListenerConfig {
+  private final RabbitListenerProperties properties;
+  private final SimpleRabbitListenerContainerFactoryConfigurer configurer;
+  private final ConnectionFactory connectionFactory;
+  private final ObjectProvider<ExecutorService> virtualThreadExecutor;
+
+  /**
+   * Creates the configuration with the settings and infrastructure shared by
+   * all container factories.
+   * 
+   * @param properties            the {@link RabbitListenerProperties} of the
+   *                              containers.
+   * @param configurer            the Spring Boot container factory configurer.
+   * @param connectionFactory     the RabbitMQ {@link ConnectionFactory}.
+   * @param virtualThreadExecutor the {@link ExecutorService} backed by virtual
+   *                              threads, available only if virtual threads
+   *                              are enabled.
+   */
+  public RabbitListenerConfig(RabbitListenerProperties properties,
+      SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+      @Qualifier("virtualThreadExecutor") ObjectProvider<ExecutorService> virtualThreadExecutor) {
+    this.properties = properties;
+    this.configurer = configurer;
+    this.connectionFactory = connectionFactory;
+    this.virtualThreadExecutor = virtualThreadExecutor;
+  }
+
+  /**
+   * Defines a {@link SimpleRabbitListenerContainerFactory} bean for the total
+   * price queues.
+   * 
+   * @return a {@link SimpleRabbitListenerContainerFactory} delivering messages
+   *         one at a time.
+   */
+  @Bean
+  public SimpleRabbitListenerContainerFactory totalPriceContainerFactory() {
+    return createContainerFactory(properties.getTotalPrice());
+  }
+
+  /**
+   * Defines a {@link SimpleRabbitListenerContainerFactory} bean for the fetch
+   * quantity queue.
+   * 
+   * @return a {@link SimpleRabbitListenerContainerFactory} delivering messages
+   *         in batches.
+   */
+  @Bean
+  public SimpleRabbitListenerContainerFactory fetchQtyContainerFactory() {
+    return createBatchContainerFactory(properties.getFetchQty());
+  }
+
+  /**
+   * Defines a {@link SimpleRabbitListenerContainerFactory} bean for the restore
+   * quantity queue.
+   * 
+   * @return a {@link SimpleRabbitListenerContainerFactory} delivering messages
+   *         in batches.
+   */
+  @Bean
+  public SimpleRabbitListenerContainerFactory restoreQtyContainerFactory() {
+    return createBatchContainerFactory(properties.getRestoreQty());
+  }
+
+  /**
+   * Creates a {@link SimpleRabbitListenerContainerFactory} with the Spring Boot
+   * defaults, including the message converter, and the given container
+   * settings. Consumers run on virtual threads if enabled.
+   * 
+   * @param container the {@link Container} settings to apply.
+   * @return a configured {@link SimpleRabbitListenerContainerFactory}.
+   */
+  private SimpleRabbitListenerContainerFactory createContainerFactory(Container container) {
+    SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+    configurer.configure(factory, connectionFactory);
+    factory.setConcurrentConsumers(container.getConcurrency());
+    factory.setMaxConcurrentConsumers(container.getMaxConcurrency());
+    factory.setPrefetchCount(container.getPrefetch());
+    virtualThreadExecutor.ifAvailable(factory::setTaskExecutor);
+    return factory;
+  }
+
+  /**
+   * Creates a {@link SimpleRabbitListenerContainerFactory} whose consumers
+   * collect up to the configured batch size of messages, or as many as arrive
+   * within the receive timeout, and deliver them to the listener as a single
+   * {@link java.util.List}.
+   * 
+   * @param container the {@link Container} settings to apply.
+   * @return a configured {@link SimpleRabbitListenerContainerFactory} for batch
+   *         listeners.
+   */
+  private SimpleRabbitListenerContainerFactory createBatchContainerFactory(Container container) {
+    SimpleRabbitListenerContainerFactory factory = createContainerFactory(container);
+    factory.setBatchListener(true);
+    factory.setConsumerBatchEnabled(true);
+    factory.setBatchSize(container.getBatchSize());
+    factory.setReceiveTimeout(container.getReceiveTimeout().toMillis());
+    return factory;
+  }
+}
@@ -0,0 +1,48 @@
+package com.drevotiuk.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Configuration properties of the RabbitMQ listener containers.
+ * <p>
+ * Each queue is consumed by its own container, so that consumers of one queue
+ * can be scaled independently of the others.
+ * </p>
+ */
+@Data
+@ConfigurationProperties(prefix = "rabbitmq.listener")
+public class RabbitListenerProperties {
+  /** The container settings of the total price queue. */
+  private Container totalPrice = new Container();
+
+  /** The container settings of the fetch quantity queue. */
+  private Container fetchQty = new Container();
+
+  /** The container settings of the restore quantity queue. */
+  private Container restoreQty = new Container();
+
+  /**
+   * Settings of a single listener container.
+   */
+  @Data
+  public static class Container {
+    /** The number of consumers started initially. */
+    private int concurrency = 1;
+
+    /** The number of consumers the container can scale up to under load. */
+    private int maxConcurrency = 1;
+
+    /** The number of unacknowledged messages each consumer may hold. */
+    private int prefetch = 250;
+
+    /** The maximum number of messages delivered to the listener at once. */
+    private int batchSize = 1;
+
+    /** The time to wait for further messages before delivering a partial batch. */
+    private Duration receiveTimeout = Duration.ofMillis(100);
+  }
+}
@@ -1,5 +1,6 @@
 package com.drevotiuk.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
@@ -22,6 +23,8 @@ public class RabbitMQConfig {
 
   @Value("${rabbitmq.queue.total-price}")
   private String totalPriceQueue;
+  @Value("${rabbitmq.queue.total-price-batch}")
+  private String totalPriceBatchQueue;
   @Value("${rabbitmq.queue.fetch-qty}")
   private String fetchQtyQueue;
   @Value("${rabbitmq.queue.restore-qty}")
@@ -29,10 +32,14 @@ public class RabbitMQConfig {
 
   @Value("${rabbitmq.routingkey.total-price}")
   private String totalPriceRoutingKey;
+  @Value("${rabbitmq.routingkey.total-price-batch}")
+  private String totalPriceBatchRoutingKey;
   @Value("${rabbitmq.routingkey.fetch-qty}")
   private String fetchQtyRoutingKey;
   @Value("${rabbitmq.routingkey.restore-qty}")
   private String restoreQtyRoutingKey;
+  @Value("${rabbitmq.routingkey.product-changed}")
+  private String productChangedRoutingKey;
 
   /**
    * Defines a {@link DirectExchange} bean for the product service.
@@ -54,6 +61,16 @@ public class RabbitMQConfig {
     return new Queue(totalPriceQueue);
   }
 
+  /**
+   * Defines a {@link Queue} bean for the batch total price queue.
+   * 
+   * @return a {@link Queue} instance with the configured queue name.
+   */
+  @Bean
+  public Queue totalPriceBatchQueue() {
+    return new Queue(totalPriceBatchQueue);
+  }
+
   /**
    * Defines a {@link Queue} bean for the fetch quantity queue.
    * 
@@ -87,6 +104,19 @@ public class RabbitMQConfig {
         .with(totalPriceRoutingKey);
   }
 
+  /**
+   * Defines a {@link Binding} bean that binds the batch total price queue to
+   * the product service exchange
+   * using the batch total price routing key.
+   * 
+   * @return a {@link Binding} instance for the batch total price queue.
+   */
+  @Bean
+  public Binding totalPriceBatchBinding() {
+    return BindingBuilder.bind(totalPriceBatchQueue()).to(productServiceExchange())
+        .with(totalPriceBatchRoutingKey);
+  }
+
   /**
    * Defines a {@link Binding} bean that binds the fetch quantity queue to the
    * product service exchange
@@ -112,4 +142,31 @@ public class RabbitMQConfig {
     return BindingBuilder.bind(restoreQtyQueue()).to(productServiceExchange())
         .with(restoreQtyRoutingKey);
   }
+
+  /**
+   * Defines an {@link AnonymousQueue} bean for product change broadcasts.
+   * <p>
+   * Every instance of the service declares its own exclusive, auto-deleted
+   * queue, so each change is delivered to all instances.
+   * </p>
+   * 
+   * @return an {@link AnonymousQueue} instance with a generated queue name.
+   */
+  @Bean
+  public AnonymousQueue productChangedQueue() {
+    return new AnonymousQueue();
+  }
+
+  /**
+   * Defines a {@link Binding} bean that binds the product changed queue of this
+   * instance to the product service exchange
+   * using the product changed routing key.
+   * 
+   * @return a {@link Binding} instance for the product changed queue.
+   */
+  @Bean
+  public Binding productChangedBinding() {
+    return BindingBuilder.bind(productChangedQueue()).to(productServiceExchange())
+        .with(productChangedRoutingKey);
+  }
 }
@@ -0,0 +1,71 @@
+package com.drevotiuk.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Configuration class for running request handlers on virtual threads.
+ * <p>
+ * Enabled with {@code product.virtual-threads.enabled}. Servlet requests and
+ * RabbitMQ listener invocations are then executed on virtual threads, so a
+ * handler blocked on database I/O no longer holds a platform thread.
+ * </p>
+ * <p>
+ * Virtual threads require Java 21, while the service is built for and runs on
+ * Java 17. The executor is looked up reflectively so that the service still
+ * builds there, but on a Java 17 runtime the mode is unavailable: it is
+ * disabled by default, and enabling it fails startup rather than silently
+ * falling back to platform threads. It only takes effect when the service runs
+ * on a Java 21 runtime.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "product.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+  /**
+   * Defines an {@link ExecutorService} bean starting a new virtual thread for
+   * each task.
+   * 
+   * @return an {@link ExecutorService} backed by virtual threads.
+   * @throws IllegalStateException if the Java runtime does not support virtual
+   *                               threads.
+   */
+  @Bean
+  public ExecutorService virtualThreadExecutor() {
+    try {
+      ExecutorService executor = (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+      log.info("Handling requests and messages on virtual threads");
+      return executor;
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Virtual threads are enabled but not supported by Java "
+          + System.getProperty("java.version") + "; they require Java 21 or later", e);
+    }
+  }
+
+  /**
+   * Defines a {@link TomcatProtocolHandlerCustomizer} bean that makes Tomcat
+   * process servlet requests on virtual threads.
+   * 
+   * @param virtualThreadExecutor the {@link ExecutorService} backed by virtual
+   *                              threads.
+   * @return a {@link TomcatProtocolHandlerCustomizer} replacing the request
+   *         thread pool.
+   */
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+      ExecutorService virtualThreadExecutor) {
+    return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+  }
+}
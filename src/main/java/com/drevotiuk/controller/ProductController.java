@@ -1,10 +1,16 @@
 package com.drevotiuk.controller;
 
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSort;
+import com.drevotiuk.model.ProductSuggestion;
 import com.drevotiuk.model.ProductView;
 import com.drevotiuk.service.ProductService;
 
 import lombok.RequiredArgsConstructor;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import org.bson.types.ObjectId;
@@ -12,6 +18,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -24,20 +31,78 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/${api.version}/products")
 @RequiredArgsConstructor
 public class ProductController {
+  private static final String DEFAULT_PAGE_LIMIT = "20";
+  private static final String DEFAULT_SUGGESTION_LIMIT = "10";
+
   private final ProductService service;
 
   /**
-   * Retrieves a list of all products.
+   * Retrieves a page of products, optionally filtered and sorted.
+   * <p>
+   * The cursor of the next page is only valid with the same filter and sort.
+   * </p>
    * 
-   * @return a {@link ResponseEntity} containing a list of {@link ProductView}
-   *         objects with HTTP status 200 OK.
+   * @param cursor   the cursor returned with the previous page, or
+   *                 {@code null} for the first page.
+   * @param limit    the maximum number of products in the page.
+   * @param category the category of the products, or {@code null} for all
+   *                 categories.
+   * @param minPrice the minimum price of the products, inclusive.
+   * @param maxPrice the maximum price of the products, inclusive.
+   * @param inStock  whether only products in stock are returned.
+   * @param sort     the order of the products.
+   * @return a {@link ResponseEntity} containing a {@link ProductPage} with HTTP
+   *         status 200 OK, or HTTP status 400 BAD REQUEST if the cursor, limit
+   *         or filter is invalid.
    */
   @GetMapping
-  public ResponseEntity<List<ProductView>> findAll() {
-    List<ProductView> products = service.findAll();
+  public ResponseEntity<ProductPage> findAll(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+      @RequestParam(required = false) ProductCategory category,
+      @RequestParam(required = false) BigDecimal minPrice,
+      @RequestParam(required = false) BigDecimal maxPrice,
+      @RequestParam(defaultValue = "false") boolean inStock,
+      @RequestParam(defaultValue = "ID") ProductSort sort) {
+    ProductFilter filter = new ProductFilter(category, minPrice, maxPrice, inStock, sort);
+    ProductPage products = service.findAll(filter, cursor, limit);
+    return ResponseEntity.ok(products);
+  }
+
+  /**
+   * Searches products by name, ranked by relevance.
+   * 
+   * @param query  the text to search for in product names.
+   * @param cursor the cursor returned with the previous page of results, or
+   *               {@code null} for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link ResponseEntity} containing a {@link ProductPage} with HTTP
+   *         status 200 OK, or HTTP status 400 BAD REQUEST if the query, cursor
+   *         or limit is invalid.
+   */
+  @GetMapping("/search")
+  public ResponseEntity<ProductPage> search(@RequestParam("q") String query,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
+    ProductPage products = service.search(query, cursor, limit);
     return ResponseEntity.ok(products);
   }
 
+  /**
+   * Suggests products whose names start with a prefix, for type-ahead input.
+   * 
+   * @param prefix the prefix typed so far.
+   * @param limit  the maximum number of suggestions.
+   * @return a {@link ResponseEntity} containing a {@link List} of
+   *         {@link ProductSuggestion} objects with HTTP status 200 OK, or HTTP
+   *         status 400 BAD REQUEST if the limit is invalid.
+   */
+  @GetMapping("/autocomplete")
+  public ResponseEntity<List<ProductSuggestion>> suggest(@RequestParam String prefix,
+      @RequestParam(defaultValue = DEFAULT_SUGGESTION_LIMIT) int limit) {
+    List<ProductSuggestion> suggestions = service.suggest(prefix, limit);
+    return ResponseEntity.ok(suggestions);
+  }
+
   /**
    * Retrieves a specific product by its ID.
    * 
@@ -5,6 +5,7 @@ import java.util.List;
 import javax.validation.Valid;
 
 import org.bson.types.ObjectId;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,9 +16,13 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductUpsertResult;
 import com.drevotiuk.model.ProductView;
 import com.drevotiuk.service.ProductManagementService;
 
@@ -35,25 +40,54 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ProductManagementController {
   private static final String ACCESS_DENIED_MESSAGE = "Access denied";
+  private static final String DEFAULT_PAGE_LIMIT = "20";
 
   private final ProductManagementService managementService;
 
   /**
-   * Retrieves a list of all products if the user has the required access role.
+   * Retrieves a page of products if the user has the required access role.
    * 
-   * @param role the role of the user, used for access control.
-   * @return a {@link ResponseEntity} containing a list of {@link ProductView}
-   *         objects with HTTP status 200 OK if the user has access.
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @param role   the role of the user, used for access control.
+   * @return a {@link ResponseEntity} containing a {@link ProductPage} with HTTP
+   *         status 200 OK if the user has access.
    * @throws IllegalArgumentException if the user does not have the required
    *                                  access role.
    */
   @GetMapping
-  public ResponseEntity<List<ProductView>> findAll(@RequestHeader("X-User-Role") String role) {
+  public ResponseEntity<ProductPage> findAll(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+      @RequestHeader("X-User-Role") String role) {
     Assert.isTrue("ADMIN".equals(role), ACCESS_DENIED_MESSAGE);
-    List<ProductView> products = managementService.findAll();
+    ProductPage products = managementService.findAll(cursor, limit);
     return ResponseEntity.ok(products);
   }
 
+  /**
+   * Exports all products as newline-delimited JSON if the user has the required
+   * access role.
+   * <p>
+   * The response is streamed while products are read from the database.
+   * </p>
+   * 
+   * @param role the role of the user, used for access control.
+   * @return a {@link ResponseEntity} containing a {@link StreamingResponseBody}
+   *         that writes one {@link ProductView} per line with HTTP status 200 OK
+   *         if the user has access.
+   * @throws IllegalArgumentException if the user does not have the required
+   *                                  access role.
+   */
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> export(@RequestHeader("X-User-Role") String role) {
+    Assert.isTrue("ADMIN".equals(role), ACCESS_DENIED_MESSAGE);
+    StreamingResponseBody products = managementService::export;
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(products);
+  }
+
   /**
    * Retrieves a specific product by its ID if the user has the required access
    * role.
@@ -91,6 +125,29 @@ public class ProductManagementController {
     return ResponseEntity.ok(createdProduct);
   }
 
+  /**
+   * Creates or updates products by name if the user has the required access
+   * role.
+   * <p>
+   * Each product is validated and written independently, so the response
+   * reports the outcome of every product even if some of them failed.
+   * </p>
+   * 
+   * @param products the {@link Product} objects to create or update.
+   * @param role     the role of the user, used for access control.
+   * @return a {@link ResponseEntity} containing a {@link ProductUpsertResult}
+   *         per product with HTTP status 200 OK if the user has access.
+   * @throws IllegalArgumentException if the user does not have the required
+   *                                  access role.
+   */
+  @PostMapping("/bulk")
+  public ResponseEntity<List<ProductUpsertResult>> upsertAll(@RequestBody List<Product> products,
+      @RequestHeader("X-User-Role") String role) {
+    Assert.isTrue("ADMIN".equals(role), ACCESS_DENIED_MESSAGE);
+    List<ProductUpsertResult> results = managementService.upsertAll(products);
+    return ResponseEntity.ok(results);
+  }
+
   /**
    * Updates an existing product by its ID if the user has the required access
    * role.
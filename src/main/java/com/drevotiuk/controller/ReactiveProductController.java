@@ -0,0 +1,82 @@
+package com.drevotiuk.controller;
+
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.service.ReactiveProductService;
+
+import lombok.RequiredArgsConstructor;
+
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * REST controller for non-blocking product reads.
+ * <p>
+ * Provides the same read endpoints as {@link ProductController}, backed by the
+ * reactive MongoDB driver. Requests are completed asynchronously, so no
+ * request thread waits for the database. Only available with the "reactive"
+ * profile.
+ * </p>
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/${api.version}/reactive/products")
+@RequiredArgsConstructor
+public class ReactiveProductController {
+  private static final String DEFAULT_PAGE_LIMIT = "20";
+
+  private final ReactiveProductService service;
+
+  /**
+   * Retrieves a page of products.
+   * 
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link Mono} emitting a {@link ProductPage} with HTTP status 200
+   *         OK, or HTTP status 400 BAD REQUEST if the cursor or limit is
+   *         invalid.
+   */
+  @GetMapping
+  public Mono<ProductPage> findAll(@RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
+    return service.findAll(cursor, limit);
+  }
+
+  /**
+   * Streams all products as newline-delimited JSON.
+   * <p>
+   * Products are written as they are read from the database, and reading slows
+   * down when the client does not keep up.
+   * </p>
+   * 
+   * @return a {@link Flux} emitting a {@link ProductView} per product with HTTP
+   *         status 200 OK.
+   */
+  @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<ProductView> stream() {
+    return service.stream();
+  }
+
+  /**
+   * Retrieves a specific product by its ID.
+   * 
+   * @param productId the ID of the product to retrieve, must not be {@code null}.
+   * @return a {@link Mono} emitting the {@link ProductView} object with HTTP
+   *         status 200 OK if found, or HTTP status 404 NOT FOUND if the product
+   *         is not found.
+   */
+  @GetMapping("/{productId}")
+  public Mono<ProductView> find(@PathVariable ObjectId productId) {
+    return service.find(productId);
+  }
+}
@@ -0,0 +1,32 @@
+package com.drevotiuk.model;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the price of a single line of a cart.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class CartLinePrice {
+  /** The ID of the product. */
+  private String productId;
+
+  /** The ordered quantity of the product. */
+  private int qty;
+
+  /** The unit price of the product, or {@code null} if it does not exist. */
+  private BigDecimal unitPrice;
+
+  /** The total price of the line, or {@code null} if the product does not exist. */
+  private BigDecimal total;
+
+  /** Whether the line can be fulfilled from the current stock. */
+  private StockVerdict verdict;
+}
@@ -0,0 +1,32 @@
+package com.drevotiuk.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the price of a whole cart.
+ * <p>
+ * This class contains the price of each cart line, the grand total of all
+ * lines with an existing product, and whether the whole cart can be fulfilled
+ * from the current stock.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class CartPrice {
+  /** The price of each line, in the order of the cart. */
+  private List<CartLinePrice> lines;
+
+  /** The sum of the totals of all lines with an existing product. */
+  private BigDecimal total;
+
+  /** Whether every line is {@link StockVerdict#IN_STOCK}. */
+  private boolean available;
+}
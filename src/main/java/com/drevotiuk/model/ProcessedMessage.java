@@ -0,0 +1,30 @@
+package com.drevotiuk.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a message that has already been processed.
+ * <p>
+ * This class is mapped to the "processed_messages" collection in MongoDB,
+ * where documents expire after a configured time to live.
+ * </p>
+ */
+@Document("processed_messages")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class ProcessedMessage {
+  /** The ID of the message, prefixed with the name of the consuming listener. */
+  @Id
+  private String id;
+
+  /** The time the message was processed at. */
+  private Instant processedAt;
+}
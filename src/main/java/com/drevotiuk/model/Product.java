@@ -1,6 +1,7 @@
 package com.drevotiuk.model;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
@@ -8,8 +9,16 @@ import javax.validation.constraints.NotNull;
 
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -22,8 +31,18 @@ import lombok.NoArgsConstructor;
  * details about the product, such as its ID, name, category, price, and
  * quantity.
  * </p>
+ * <p>
+ * The compound indexes support browsing by category and price range in the
+ * orders of {@link ProductSort}.
+ * </p>
  */
 @Document("products")
+@CompoundIndexes({
+    @CompoundIndex(name = "category_price_id", def = "{'category': 1, 'price': 1, '_id': 1}"),
+    @CompoundIndex(name = "category_name", def = "{'category': 1, 'name': 1}"),
+    @CompoundIndex(name = "category_id", def = "{'category': 1, '_id': 1}"),
+    @CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -32,22 +51,32 @@ public class Product {
   @Id
   private ObjectId id;
 
-  /** The name of the product. */
+  /** The name of the product, unique across the catalog and searchable as text. */
   @NotBlank(message = "Name is required")
-  @Indexed
+  @Indexed(unique = true)
+  @TextIndexed
   private String name;
 
   /** The category of the product. */
   @NotNull(message = "Category is required")
   private ProductCategory category;
 
-  /** The price of the product. */
+  /** The price of the product, stored as a decimal so that it is compared numerically. */
   @NotNull(message = "Price is required")
   @Min(value = 0, message = "Price cannot be negative")
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal price;
 
   /** The quantity of the product in stock. */
   @NotNull(message = "Quantity is required")
   @Min(value = 0, message = "Quantity cannot be negative")
   private Integer qty;
+
+  /** The time of the last write of the product, set by the service on every write. */
+  @JsonProperty(access = Access.READ_ONLY)
+  private Instant updatedAt;
+
+  public Product(ObjectId id, String name, ProductCategory category, BigDecimal price, Integer qty) {
+    this(id, name, category, price, qty, null);
+  }
 }
@@ -0,0 +1,31 @@
+package com.drevotiuk.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents a notification that products have changed.
+ * <p>
+ * This event is broadcast to every instance of the service so that local
+ * copies of the products can be evicted. A write of several products, such as
+ * a batch of stock updates, is broadcast as a single event.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class ProductChangedEvent {
+  /** The IDs of the changed products, or {@code null} if any product changed. */
+  private List<String> productIds;
+
+  /**
+   * The version of the change: the update time written to the changed
+   * products, in epoch milliseconds.
+   */
+  private long version;
+}
@@ -0,0 +1,45 @@
+package com.drevotiuk.model;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the criteria a page of products is filtered and sorted by.
+ * <p>
+ * Criteria left {@code null} do not restrict the products.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class ProductFilter {
+  /** The category of the products, or {@code null} for all categories. */
+  private ProductCategory category;
+
+  /** The minimum price of the products, inclusive. */
+  private BigDecimal minPrice;
+
+  /** The maximum price of the products, inclusive. */
+  private BigDecimal maxPrice;
+
+  /** Whether only products with a positive quantity are returned. */
+  private boolean inStock;
+
+  /** The order of the products, {@link ProductSort#ID} if {@code null}. */
+  private ProductSort sort;
+
+  /**
+   * Returns the order of the products.
+   * 
+   * @return the requested {@link ProductSort}, or {@link ProductSort#ID} if
+   *         none was requested.
+   */
+  public ProductSort getSort() {
+    return sort == null ? ProductSort.ID : sort;
+  }
+}
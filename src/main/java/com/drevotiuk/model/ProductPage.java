@@ -0,0 +1,28 @@
+package com.drevotiuk.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a single page of products.
+ * <p>
+ * This class contains the products of the requested page and an opaque cursor
+ * pointing at the next page, which is {@code null} when there are no more
+ * products.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@EqualsAndHashCode
+public class ProductPage {
+  /** The products of this page. */
+  private List<ProductView> items;
+
+  /** The cursor of the next page, or {@code null} if this page is the last. */
+  private String next;
+}
@@ -0,0 +1,37 @@
+package com.drevotiuk.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents the order in which a page of products is returned.
+ * <p>
+ * Products are always returned in ascending order. Sorting by a field that is
+ * not unique falls back to the product ID for products with equal values, so
+ * that every product has a stable position for keyset pagination.
+ * </p>
+ */
+@RequiredArgsConstructor
+@Getter
+public enum ProductSort {
+  /**
+   * Sorts products by ID, which is the order in which they were created.
+   */
+  ID("id", true),
+
+  /**
+   * Sorts products by price.
+   */
+  PRICE("price", false),
+
+  /**
+   * Sorts products by name.
+   */
+  NAME("name", true);
+
+  /** The name of the sorted property of {@link Product}. */
+  private final String property;
+
+  /** Whether the sorted property is unique across products. */
+  private final boolean unique;
+}
@@ -0,0 +1,53 @@
+package com.drevotiuk.model;
+
+import java.math.BigDecimal;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents a product suggested while a name is being typed.
+ * <p>
+ * Contains the details shown next to a suggestion, without the stock
+ * quantity, which changes too often to be kept in the autocomplete index. It
+ * is also used as a projection of the "products" collection.
+ * </p>
+ */
+@NoArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+public class ProductSuggestion {
+  /** The ID of the product. */
+  @JsonSerialize(using = ToStringSerializer.class)
+  private ObjectId id;
+
+  /** The name of the product. */
+  private String name;
+
+  /** The category of the product. */
+  private String category;
+
+  /** The price of the product. */
+  private BigDecimal price;
+
+  @PersistenceConstructor
+  public ProductSuggestion(ObjectId id, String name, String category, BigDecimal price) {
+    this.id = id;
+    this.name = name;
+    this.category = category;
+    this.price = price;
+  }
+
+  public ProductSuggestion(Product product) {
+    this(product.getId(), product.getName(), product.getCategory().name(), product.getPrice());
+  }
+}
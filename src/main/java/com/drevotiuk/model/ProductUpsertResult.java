@@ -0,0 +1,30 @@
+package com.drevotiuk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the outcome of upserting a single product of a bulk request.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class ProductUpsertResult {
+  /** The position of the product in the request. */
+  private int index;
+
+  /** The name of the product, used as the upsert key. */
+  private String name;
+
+  /** The ID of the product if it was created, otherwise {@code null}. */
+  private String productId;
+
+  /** The outcome of the upsert. */
+  private ProductUpsertStatus status;
+
+  /** The reason of the failure if the upsert failed, otherwise {@code null}. */
+  private String error;
+}
@@ -0,0 +1,21 @@
+package com.drevotiuk.model;
+
+/**
+ * Represents the outcome of upserting a single product of a bulk request.
+ */
+public enum ProductUpsertStatus {
+  /**
+   * No product had the name, so a new product was inserted.
+   */
+  CREATED,
+
+  /**
+   * A product with the name existed and was updated.
+   */
+  UPDATED,
+
+  /**
+   * The product was invalid or could not be written.
+   */
+  FAILED
+}
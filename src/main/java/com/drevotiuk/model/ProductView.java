@@ -2,7 +2,14 @@ package com.drevotiuk.model;
 
 import java.math.BigDecimal;
 
-import lombok.AllArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -14,28 +21,46 @@ import lombok.NoArgsConstructor;
  * {@link Product} for display purposes,
  * containing fields such as name, category, price, and quantity.
  * </p>
+ * <p>
+ * It is also used as a projection of the "products" collection: repository
+ * methods returning it read only the fields of the view, and the document is
+ * decoded directly into it through the persistence constructor.
+ * </p>
  */
-@AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @EqualsAndHashCode
 public class ProductView {
+  /** The ID of the product. */
+  @JsonSerialize(using = ToStringSerializer.class)
+  private ObjectId id;
+
   /** The name of the product. */
   private String name;
 
   /** The category of the product. */
   private String category;
 
-  /** The price of the product. */
+  /**
+   * The price of the product, mapped as a decimal like {@link Product#getPrice()}
+   * so that queries on the view compare it numerically.
+   */
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal price;
 
   /** The quantity of the product in stock. */
   private int qty;
 
+  @PersistenceConstructor
+  public ProductView(ObjectId id, String name, String category, BigDecimal price, int qty) {
+    this.id = id;
+    this.name = name;
+    this.category = category;
+    this.price = price;
+    this.qty = qty;
+  }
+
   public ProductView(Product product) {
-    this.name = product.getName();
-    this.category = product.getCategory().name();
-    this.price = product.getPrice();
-    this.qty = product.getQty();
+    this(product.getId(), product.getName(), product.getCategory().name(), product.getPrice(), product.getQty());
   }
 }
@@ -0,0 +1,24 @@
+package com.drevotiuk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the outcome of a stock update for a single product of an order.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class StockItemResult {
+  /** The ID of the product. */
+  private String productId;
+
+  /** The requested quantity change of the product. */
+  private int qty;
+
+  /** The outcome of the update. */
+  private StockItemStatus status;
+}
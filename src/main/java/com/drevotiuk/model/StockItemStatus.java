@@ -0,0 +1,32 @@
+package com.drevotiuk.model;
+
+/**
+ * Represents the outcome of a stock update for a single product.
+ */
+public enum StockItemStatus {
+  /**
+   * The quantity of the product was updated.
+   */
+  UPDATED,
+
+  /**
+   * The quantity of the product was updated and then reverted because the
+   * order could not be reserved as a whole.
+   */
+  ROLLED_BACK,
+
+  /**
+   * The product does not have enough quantity in stock.
+   */
+  INSUFFICIENT_QUANTITY,
+
+  /**
+   * The product does not exist.
+   */
+  NOT_FOUND,
+
+  /**
+   * The outcome is unknown because of a database error.
+   */
+  FAILED
+}
@@ -0,0 +1,23 @@
+package com.drevotiuk.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents a request to update stock for a whole order.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class StockUpdateRequest {
+  /** The ID identifying this stock update. */
+  private String reservationId;
+
+  /** The items of the order. */
+  private List<OrderItem> items;
+}
@@ -0,0 +1,37 @@
+package com.drevotiuk.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Represents the outcome of a stock update for a whole order.
+ * <p>
+ * Order items referring to the same product are merged, so this result
+ * contains one {@link StockItemResult} per distinct product.
+ * </p>
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@ToString
+public class StockUpdateResult {
+  /** The ID identifying this stock update. */
+  private String reservationId;
+
+  /** The outcome for each product of the order. */
+  private List<StockItemResult> items;
+
+  /**
+   * Returns whether every product of the order was updated.
+   * 
+   * @return {@code true} if all items have status
+   *         {@link StockItemStatus#UPDATED}.
+   */
+  public boolean isComplete() {
+    return items.stream().allMatch(item -> item.getStatus() == StockItemStatus.UPDATED);
+  }
+}
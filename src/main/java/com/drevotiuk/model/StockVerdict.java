@@ -0,0 +1,21 @@
+package com.drevotiuk.model;
+
+/**
+ * Represents whether a cart line can be fulfilled from the current stock.
+ */
+public enum StockVerdict {
+  /**
+   * The product has enough quantity in stock.
+   */
+  IN_STOCK,
+
+  /**
+   * The product does not have enough quantity in stock.
+   */
+  INSUFFICIENT_QUANTITY,
+
+  /**
+   * The product does not exist.
+   */
+  NOT_FOUND
+}
@@ -0,0 +1,22 @@
+package com.drevotiuk.model.exception;
+
+/**
+ * Custom exception class that indicates that requested page is invalid.
+ * This exception is typically thrown when the page cursor cannot be decoded or
+ * the page limit is out of the allowed range.
+ */
+public class InvalidPageRequestException extends RuntimeException {
+  private static final long serialVersionUID = 3315482746182035190L;
+
+  public InvalidPageRequestException(String message) {
+    super(message);
+  }
+
+  public InvalidPageRequestException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public InvalidPageRequestException(Throwable cause) {
+    super(cause);
+  }
+}
@@ -1,8 +1,14 @@
 package com.drevotiuk.repository;
 
 import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductView;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,10 +16,39 @@ import org.springframework.stereotype.Repository;
  * Repository interface for managing {@link Product} entities in MongoDB.
  * <p>
  * This interface extends {@link MongoRepository} to provide CRUD operations for
- * {@link Product} entities.
+ * {@link Product} entities. Methods returning {@link ProductView} objects are
+ * projections that read only the fields of the view.
  * </p>
  */
 @Repository
 public interface ProductRepository extends MongoRepository<Product, ObjectId> {
   boolean existsByName(String name);
+
+  /**
+   * Retrieves views of products with IDs greater than the given one, which
+   * results in an index range scan over {@code _id}.
+   * 
+   * @param id       the ID after which products are retrieved.
+   * @param pageable the page request defining the sort order and limit.
+   * @return a {@link List} of matching {@link ProductView} objects.
+   */
+  List<ProductView> findViewsByIdGreaterThan(ObjectId id, Pageable pageable);
+
+  /**
+   * Retrieves the view of a product by its ID.
+   * 
+   * @param id the ID of the product.
+   * @return an {@link Optional} containing the {@link ProductView}, or empty if
+   *         the product does not exist.
+   */
+  Optional<ProductView> findViewById(ObjectId id);
+
+  /**
+   * Retrieves views of the products with the given IDs.
+   * 
+   * @param ids the IDs of the products.
+   * @return a {@link List} of {@link ProductView} objects of the existing
+   *         products.
+   */
+  List<ProductView> findViewsByIdIn(Collection<ObjectId> ids);
 }
@@ -0,0 +1,55 @@
+package com.drevotiuk.repository;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductView;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive repository interface for reading {@link Product} entities from
+ * MongoDB.
+ * <p>
+ * This interface extends {@link ReactiveMongoRepository} to provide
+ * non-blocking access to {@link Product} entities through the reactive
+ * MongoDB driver. Methods returning {@link ProductView} objects are
+ * projections that read only the fields of the view.
+ * </p>
+ */
+@Repository
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, ObjectId> {
+  /**
+   * Retrieves views of products with IDs greater than the given one, which
+   * results in an index range scan over {@code _id}.
+   * 
+   * @param id       the ID after which products are retrieved.
+   * @param pageable the page request defining the sort order and limit.
+   * @return a {@link Flux} of matching {@link ProductView} objects.
+   */
+  Flux<ProductView> findViewsByIdGreaterThan(ObjectId id, Pageable pageable);
+
+  /**
+   * Retrieves views of all products with IDs greater than the given one in
+   * the given order.
+   * 
+   * @param id   the ID after which products are retrieved.
+   * @param sort the sort order.
+   * @return a {@link Flux} of matching {@link ProductView} objects.
+   */
+  Flux<ProductView> findViewsByIdGreaterThan(ObjectId id, Sort sort);
+
+  /**
+   * Retrieves the view of a product by its ID.
+   * 
+   * @param id the ID of the product.
+   * @return a {@link Mono} emitting the {@link ProductView}, or empty if the
+   *         product does not exist.
+   */
+  Mono<ProductView> findViewById(ObjectId id);
+}
@@ -0,0 +1,259 @@
+package com.drevotiuk.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Binary snapshot of the {@link ProductReplica} on local disk.
+ * <p>
+ * The snapshot holds the time it was written and the resume token of the
+ * change stream, followed by the products in ID order, and ends with the
+ * number of products so that a truncated file is detected. Categories are
+ * stored by name, so that snapshots stay readable when categories change. It
+ * is written to a temporary file that then replaces the previous snapshot. At
+ * startup the file is memory-mapped and loaded into a {@link CatalogStore}, so
+ * that reads are served at once while the change stream catches up from the
+ * stored resume token.
+ * </p>
+ * <p>
+ * Snapshots are disabled if no path is configured. A snapshot older than the
+ * configured maximum age is ignored, as catching up with the database would
+ * take longer than loading the collection, and it would serve stale products
+ * meanwhile.
+ * </p>
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot {
+  private static final int MAGIC = 0x50534e50;
+  private static final int VERSION = 2;
+  private static final int TRAILER_LENGTH = 2 * Integer.BYTES;
+  private static final int ID_LENGTH = 12;
+  private static final int BATCH_SIZE = 1000;
+  private static final ObjectId FIRST_ID = new ObjectId(new byte[ID_LENGTH]);
+  private static final ProductFilter ALL = new ProductFilter();
+
+  private final Path path;
+  private final Duration maxAge;
+
+  /**
+   * Creates a {@link CatalogSnapshot}.
+   * 
+   * @param path   the path of the snapshot file, or an empty string to disable
+   *               snapshots.
+   * @param maxAge the maximum age of a snapshot that is loaded.
+   */
+  public CatalogSnapshot(@Value("${product.replica.snapshot.path}") String path,
+      @Value("${product.replica.snapshot.max-age}") Duration maxAge) {
+    this.path = path == null || path.trim().isEmpty() ? null : Paths.get(path);
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Returns whether snapshots are enabled.
+   * 
+   * @return {@code true} if a snapshot path is configured.
+   */
+  public boolean isEnabled() {
+    return path != null;
+  }
+
+  /**
+   * Writes the products of a store to the snapshot file.
+   * <p>
+   * The resume token must have been read before the store, so that changes
+   * made while the store is written are applied again after a restore. Logs
+   * and keeps the previous snapshot if the new one cannot be written.
+   * </p>
+   * 
+   * @param resumeToken the resume token of the last change applied to the
+   *                    store.
+   * @param store       the {@link CatalogStore} to write.
+   */
+  public void write(BsonDocument resumeToken, CatalogStore store) {
+    if (path == null)
+      return;
+
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    int count = 0;
+    try {
+      if (path.getParent() != null)
+        Files.createDirectories(path.getParent());
+
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        writeBytes(out, resumeToken.toJson().getBytes(StandardCharsets.UTF_8));
+
+        List<ProductView> batch = store.findAfter(ALL, FIRST_ID, BATCH_SIZE);
+        while (!batch.isEmpty()) {
+          for (ProductView product : batch)
+            writeProduct(out, product);
+
+          count += batch.size();
+          batch = store.findAfter(ALL, batch.get(batch.size() - 1).getId(), BATCH_SIZE);
+        }
+
+        out.writeInt(count);
+        out.writeInt(MAGIC);
+        out.flush();
+        channel.force(true);
+      }
+
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      log.info("Wrote {} products to the snapshot {}", count, path);
+    } catch (IOException | IllegalArgumentException e) {
+      log.warn("Cannot write the product snapshot {}", path, e);
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+    }
+  }
+
+  /**
+   * Loads the products of the snapshot file into a store.
+   * <p>
+   * Logs and ignores a missing, outdated, truncated or otherwise unreadable
+   * snapshot, in which case the store must be discarded.
+   * </p>
+   * 
+   * @param store the empty {@link CatalogStore} to load the products into.
+   * @return an {@link Optional} containing the resume token stored with the
+   *         products, or empty if no snapshot was loaded.
+   */
+  public Optional<BsonDocument> read(CatalogStore store) {
+    if (path == null || !Files.isRegularFile(path))
+      return Optional.empty();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IllegalArgumentException("Snapshot is too large: " + channel.size() + " bytes");
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        throw new IllegalArgumentException("Not a product snapshot of version " + VERSION);
+
+      Duration age = Duration.ofMillis(System.currentTimeMillis() - buffer.getLong());
+      if (age.compareTo(maxAge) > 0) {
+        log.info("Ignoring the product snapshot {} written {} ago", path, age);
+        return Optional.empty();
+      }
+
+      BsonDocument resumeToken = BsonDocument.parse(new String(readBytes(buffer), StandardCharsets.UTF_8));
+      int end = buffer.limit() - TRAILER_LENGTH;
+      int count = 0;
+      while (buffer.position() < end) {
+        store.put(readProduct(buffer));
+        count++;
+      }
+
+      if (buffer.getInt() != count || buffer.getInt() != MAGIC)
+        throw new IllegalArgumentException("Snapshot is truncated");
+
+      log.info("Loaded {} products from the snapshot {}", count, path);
+      return Optional.of(resumeToken);
+    } catch (IOException | RuntimeException e) {
+      // A corrupt snapshot only costs a full load from the database
+      log.warn("Cannot read the product snapshot {}", path, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Writes a product as a snapshot row.
+   * 
+   * @param out     the {@link DataOutputStream} of the snapshot.
+   * @param product the {@link ProductView} to write.
+   * @throws IOException              if the row cannot be written.
+   * @throws IllegalArgumentException if the product has no category.
+   */
+  private void writeProduct(DataOutputStream out, ProductView product) throws IOException {
+    if (product.getCategory() == null)
+      throw new IllegalArgumentException("Product has no category: " + product.getId());
+
+    out.write(product.getId().toByteArray());
+    out.writeInt(product.getPrice().scale());
+    writeBytes(out, product.getPrice().unscaledValue().toByteArray());
+    out.writeInt(product.getQty());
+    writeBytes(out, product.getCategory().getBytes(StandardCharsets.UTF_8));
+    writeBytes(out, product.getName().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads a snapshot row as a product.
+   * 
+   * @param buffer the buffer of the snapshot, positioned at the row.
+   * @return the {@link ProductView} of the row.
+   */
+  private ProductView readProduct(ByteBuffer buffer) {
+    byte[] id = new byte[ID_LENGTH];
+    buffer.get(id);
+    int scale = buffer.getInt();
+    BigDecimal price = new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+    int qty = buffer.getInt();
+    String category = new String(readBytes(buffer), StandardCharsets.UTF_8);
+    String name = new String(readBytes(buffer), StandardCharsets.UTF_8);
+    return new ProductView(new ObjectId(id), name, category, price, qty);
+  }
+
+  /**
+   * Writes a length-prefixed byte array.
+   * 
+   * @param out   the {@link DataOutputStream} of the snapshot.
+   * @param bytes the bytes to write.
+   * @throws IOException if the bytes cannot be written.
+   */
+  private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a length-prefixed byte array.
+   * 
+   * @param buffer the buffer of the snapshot, positioned at the length.
+   * @return the bytes read.
+   * @throws IllegalArgumentException if the length exceeds the rest of the
+   *                                  snapshot.
+   */
+  private byte[] readBytes(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining())
+      throw new IllegalArgumentException("Invalid length in snapshot: " + length);
+
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,63 @@
+package com.drevotiuk.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.types.ObjectId;
+
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+/**
+ * Storage of the products held by the {@link ProductReplica}.
+ * <p>
+ * A store is written by a single thread, the one following the change
+ * stream, and read concurrently by request threads. Products are kept in
+ * ascending ID order.
+ * </p>
+ */
+public interface CatalogStore {
+  /**
+   * Retrieves a product from the store.
+   * 
+   * @param productId the ID of the product.
+   * @return an {@link Optional} containing the {@link ProductView}, or empty
+   *         if the product is not stored.
+   */
+  Optional<ProductView> find(ObjectId productId);
+
+  /**
+   * Retrieves products matching a filter with IDs greater than the given one,
+   * in ascending ID order.
+   * 
+   * @param filter the {@link ProductFilter} the products must match; its sort
+   *               is ignored.
+   * @param after  the ID after which products are retrieved.
+   * @param count  the maximum number of products.
+   * @return a {@link List} of matching {@link ProductView} objects.
+   */
+  List<ProductView> findAfter(ProductFilter filter, ObjectId after, int count);
+
+  /**
+   * Stores a product, replacing the stored product with the same ID.
+   * 
+   * @param product the {@link ProductView} to store.
+   * @throws IllegalArgumentException if the product cannot be represented by
+   *                                  the store.
+   */
+  void put(ProductView product);
+
+  /**
+   * Removes a product from the store, if it is stored.
+   * 
+   * @param productId the ID of the product.
+   */
+  void remove(ObjectId productId);
+
+  /**
+   * Returns the number of stored products.
+   * 
+   * @return the number of stored products.
+   */
+  int size();
+}
@@ -0,0 +1,445 @@
+package com.drevotiuk.service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bson.types.ObjectId;
+
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+/**
+ * {@link CatalogStore} holding products in columns of direct buffers, outside
+ * of the heap.
+ * <p>
+ * Each product is a row of fixed-width columns sorted by ID: the ID bytes,
+ * the unscaled price and its scale, the quantity, the ordinal of the
+ * {@link ProductCategory} and the position of the UTF-8 name in a shared
+ * arena. Filters are evaluated against the columns, so a scan allocates
+ * objects only for the products it returns. Prices are stored in minor units
+ * of {@value #PRICE_SCALE} decimal places, or with their own scale if they
+ * have more, which are compared as decimals. Prices whose unscaled value does
+ * not fit in a {@code long} and unknown categories cannot be stored.
+ * </p>
+ * <p>
+ * Removed rows are marked in the category column and replaced names are left
+ * in the arena; both are compacted once they make up half of the store.
+ * </p>
+ */
+public class ColumnarCatalogStore implements CatalogStore {
+  /** The number of decimal places of prices compared in minor units. */
+  public static final int PRICE_SCALE = 2;
+
+  private static final int ID_WIDTH = 12;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int INITIAL_NAMES_CAPACITY = 64 * 1024;
+  private static final byte DELETED = -1;
+  private static final ProductCategory[] CATEGORIES = ProductCategory.values();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private ByteBuffer ids;
+  private ByteBuffer prices;
+  private ByteBuffer priceScales;
+  private ByteBuffer qtys;
+  private ByteBuffer categories;
+  private ByteBuffer nameOffsets;
+  private ByteBuffer nameLengths;
+  private ByteBuffer names;
+  private int capacity;
+  private int rows;
+  private int deletedRows;
+  private int namesUsed;
+  private int namesGarbage;
+
+  /**
+   * Creates an empty {@link ColumnarCatalogStore}.
+   */
+  public ColumnarCatalogStore() {
+    capacity = INITIAL_CAPACITY;
+    ids = ByteBuffer.allocateDirect(capacity * ID_WIDTH);
+    prices = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+    priceScales = ByteBuffer.allocateDirect(capacity);
+    qtys = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+    categories = ByteBuffer.allocateDirect(capacity);
+    nameOffsets = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+    nameLengths = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+    names = ByteBuffer.allocateDirect(INITIAL_NAMES_CAPACITY);
+  }
+
+  @Override
+  public Optional<ProductView> find(ObjectId productId) {
+    ByteBuffer key = ByteBuffer.wrap(productId.toByteArray());
+    lock.readLock().lock();
+    try {
+      int row = search(key.getLong(0), key.getInt(Long.BYTES));
+      return row >= 0 && categories.get(row) != DELETED ? Optional.of(read(row)) : Optional.empty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<ProductView> findAfter(ProductFilter filter, ObjectId after, int count) {
+    ByteBuffer key = ByteBuffer.wrap(after.toByteArray());
+    int category = filter.getCategory() == null ? DELETED : filter.getCategory().ordinal();
+    long minPrice = filter.getMinPrice() == null
+        ? Long.MIN_VALUE
+        : toMinorUnits(filter.getMinPrice(), RoundingMode.CEILING);
+    long maxPrice = filter.getMaxPrice() == null
+        ? Long.MAX_VALUE
+        : toMinorUnits(filter.getMaxPrice(), RoundingMode.FLOOR);
+
+    List<ProductView> found = new ArrayList<>(count);
+    lock.readLock().lock();
+    try {
+      int start = search(key.getLong(0), key.getInt(Long.BYTES));
+      start = start >= 0 ? start + 1 : -start - 1;
+      for (int row = start; row < rows && found.size() < count; row++) {
+        byte rowCategory = categories.get(row);
+        if (rowCategory == DELETED || (category != DELETED && rowCategory != category))
+          continue;
+
+        long price = prices.getLong(row * Long.BYTES);
+        byte scale = priceScales.get(row);
+        if (scale == PRICE_SCALE
+            ? price < minPrice || price > maxPrice
+            : !isWithin(BigDecimal.valueOf(price, scale), filter))
+          continue;
+        if (filter.isInStock() && qtys.getInt(row * Integer.BYTES) <= 0)
+          continue;
+
+        found.add(read(row));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return found;
+  }
+
+  @Override
+  public void put(ProductView product) {
+    byte category = encodeCategory(product.getCategory());
+    BigDecimal price = encodePrice(product.getPrice());
+    byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer key = ByteBuffer.wrap(product.getId().toByteArray());
+
+    lock.writeLock().lock();
+    try {
+      int row = search(key.getLong(0), key.getInt(Long.BYTES));
+      if (row < 0) {
+        row = -row - 1;
+        insertRow(row, key);
+        appendName(row, name);
+      } else if (categories.get(row) == DELETED) {
+        deletedRows--;
+        appendName(row, name);
+      } else {
+        replaceName(row, name);
+      }
+
+      prices.putLong(row * Long.BYTES, price.unscaledValue().longValue());
+      priceScales.put(row, (byte) price.scale());
+      qtys.putInt(row * Integer.BYTES, product.getQty());
+      categories.put(row, category);
+      compactIfSparse();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(ObjectId productId) {
+    ByteBuffer key = ByteBuffer.wrap(productId.toByteArray());
+    lock.writeLock().lock();
+    try {
+      int row = search(key.getLong(0), key.getInt(Long.BYTES));
+      if (row < 0 || categories.get(row) == DELETED)
+        return;
+
+      categories.put(row, DELETED);
+      deletedRows++;
+      namesGarbage += nameLengths.getInt(row * Integer.BYTES);
+      compactIfSparse();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return rows - deletedRows;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the row of an ID by binary search.
+   * 
+   * @param high the first eight bytes of the ID.
+   * @param low  the last four bytes of the ID.
+   * @return the row of the ID, or {@code -(insertion point) - 1} if it is not
+   *         stored.
+   */
+  private int search(long high, int low) {
+    int from = 0;
+    int to = rows - 1;
+    while (from <= to) {
+      int middle = (from + to) >>> 1;
+      int comparison = Long.compareUnsigned(ids.getLong(middle * ID_WIDTH), high);
+      if (comparison == 0)
+        comparison = Integer.compareUnsigned(ids.getInt(middle * ID_WIDTH + Long.BYTES), low);
+
+      if (comparison < 0)
+        from = middle + 1;
+      else if (comparison > 0)
+        to = middle - 1;
+      else
+        return middle;
+    }
+
+    return -from - 1;
+  }
+
+  /**
+   * Creates the {@link ProductView} of a row.
+   * 
+   * @param row the row.
+   * @return the {@link ProductView} of the product stored in the row.
+   */
+  private ProductView read(int row) {
+    byte[] id = new byte[ID_WIDTH];
+    ByteBuffer idSource = ids.duplicate();
+    idSource.position(row * ID_WIDTH);
+    idSource.get(id);
+
+    byte[] name = new byte[nameLengths.getInt(row * Integer.BYTES)];
+    ByteBuffer nameSource = names.duplicate();
+    nameSource.position(nameOffsets.getInt(row * Integer.BYTES));
+    nameSource.get(name);
+
+    BigDecimal price = BigDecimal.valueOf(prices.getLong(row * Long.BYTES), priceScales.get(row));
+    return new ProductView(new ObjectId(id), new String(name, StandardCharsets.UTF_8),
+        CATEGORIES[categories.get(row)].name(), price, qtys.getInt(row * Integer.BYTES));
+  }
+
+  /**
+   * Inserts a row for an ID, moving the following rows down by one.
+   * 
+   * @param row the row to insert.
+   * @param key the bytes of the ID.
+   */
+  private void insertRow(int row, ByteBuffer key) {
+    ensureCapacity(rows + 1);
+    for (int from = rows - 1; from >= row; from--)
+      copyRow(from, from + 1);
+
+    ids.putLong(row * ID_WIDTH, key.getLong(0));
+    ids.putInt(row * ID_WIDTH + Long.BYTES, key.getInt(Long.BYTES));
+    rows++;
+  }
+
+  /**
+   * Copies every column of a row to another row.
+   * 
+   * @param from the row to copy.
+   * @param to   the row to overwrite.
+   */
+  private void copyRow(int from, int to) {
+    ids.putLong(to * ID_WIDTH, ids.getLong(from * ID_WIDTH));
+    ids.putInt(to * ID_WIDTH + Long.BYTES, ids.getInt(from * ID_WIDTH + Long.BYTES));
+    prices.putLong(to * Long.BYTES, prices.getLong(from * Long.BYTES));
+    priceScales.put(to, priceScales.get(from));
+    qtys.putInt(to * Integer.BYTES, qtys.getInt(from * Integer.BYTES));
+    categories.put(to, categories.get(from));
+    nameOffsets.putInt(to * Integer.BYTES, nameOffsets.getInt(from * Integer.BYTES));
+    nameLengths.putInt(to * Integer.BYTES, nameLengths.getInt(from * Integer.BYTES));
+  }
+
+  /**
+   * Replaces the name of a stored row, in place if the new name is not longer
+   * than the old one.
+   * 
+   * @param row  the row.
+   * @param name the UTF-8 bytes of the new name.
+   */
+  private void replaceName(int row, byte[] name) {
+    int length = nameLengths.getInt(row * Integer.BYTES);
+    if (name.length > length) {
+      namesGarbage += length;
+      appendName(row, name);
+      return;
+    }
+
+    ByteBuffer target = names.duplicate();
+    target.position(nameOffsets.getInt(row * Integer.BYTES));
+    target.put(name);
+    nameLengths.putInt(row * Integer.BYTES, name.length);
+    namesGarbage += length - name.length;
+  }
+
+  /**
+   * Appends a name to the arena and points a row at it.
+   * 
+   * @param row  the row.
+   * @param name the UTF-8 bytes of the name.
+   */
+  private void appendName(int row, byte[] name) {
+    if (namesUsed + name.length > names.capacity())
+      names = grow(names, Math.max(names.capacity() * 2, namesUsed + name.length));
+
+    ByteBuffer target = names.duplicate();
+    target.position(namesUsed);
+    target.put(name);
+    nameOffsets.putInt(row * Integer.BYTES, namesUsed);
+    nameLengths.putInt(row * Integer.BYTES, name.length);
+    namesUsed += name.length;
+  }
+
+  /**
+   * Grows the columns so that they hold at least the given number of rows.
+   * 
+   * @param required the number of rows.
+   */
+  private void ensureCapacity(int required) {
+    if (required <= capacity)
+      return;
+
+    capacity = Math.max(capacity * 2, required);
+    ids = grow(ids, capacity * ID_WIDTH);
+    prices = grow(prices, capacity * Long.BYTES);
+    priceScales = grow(priceScales, capacity);
+    qtys = grow(qtys, capacity * Integer.BYTES);
+    categories = grow(categories, capacity);
+    nameOffsets = grow(nameOffsets, capacity * Integer.BYTES);
+    nameLengths = grow(nameLengths, capacity * Integer.BYTES);
+  }
+
+  /**
+   * Removes the deleted rows and the unused bytes of the arena once either
+   * makes up half of the store.
+   */
+  private void compactIfSparse() {
+    boolean sparseRows = rows >= INITIAL_CAPACITY && deletedRows * 2 > rows;
+    boolean sparseNames = namesUsed >= INITIAL_NAMES_CAPACITY && namesGarbage * 2 > namesUsed;
+    if (!sparseRows && !sparseNames)
+      return;
+
+    ByteBuffer compacted = ByteBuffer.allocateDirect(names.capacity());
+    int live = 0;
+    for (int row = 0; row < rows; row++) {
+      if (categories.get(row) == DELETED)
+        continue;
+
+      copyRow(row, live);
+      ByteBuffer name = names.duplicate();
+      int offset = nameOffsets.getInt(live * Integer.BYTES);
+      name.limit(offset + nameLengths.getInt(live * Integer.BYTES)).position(offset);
+      nameOffsets.putInt(live * Integer.BYTES, compacted.position());
+      compacted.put(name);
+      live++;
+    }
+
+    rows = live;
+    deletedRows = 0;
+    namesUsed = compacted.position();
+    namesGarbage = 0;
+    names = compacted;
+  }
+
+  /**
+   * Copies a buffer into a larger direct buffer.
+   * 
+   * @param buffer the buffer to copy.
+   * @param size   the size of the new buffer in bytes.
+   * @return the new buffer.
+   */
+  private static ByteBuffer grow(ByteBuffer buffer, int size) {
+    ByteBuffer grown = ByteBuffer.allocateDirect(size);
+    ByteBuffer source = buffer.duplicate();
+    source.clear();
+    grown.put(source);
+    grown.clear();
+    return grown;
+  }
+
+  /**
+   * Encodes a category into its ordinal.
+   * 
+   * @param category the name of the {@link ProductCategory}.
+   * @return the ordinal of the category.
+   * @throws IllegalArgumentException if the category is unknown.
+   */
+  private static byte encodeCategory(String category) {
+    if (category == null)
+      throw new IllegalArgumentException("Product has no category");
+
+    return (byte) ProductCategory.valueOf(category).ordinal();
+  }
+
+  /**
+   * Encodes a price with the scale it is stored with.
+   * <p>
+   * Prices with up to {@value #PRICE_SCALE} decimal places are scaled to minor
+   * units, while other prices keep their decimal places without trailing
+   * zeros.
+   * </p>
+   * 
+   * @param price the price.
+   * @return the price with the scale it is stored with.
+   * @throws IllegalArgumentException if the unscaled price does not fit in a
+   *                                  {@code long}.
+   */
+  private static BigDecimal encodePrice(BigDecimal price) {
+    if (price == null)
+      throw new IllegalArgumentException("Product has no price");
+
+    BigDecimal encoded = price.stripTrailingZeros();
+    if (encoded.scale() < PRICE_SCALE)
+      encoded = encoded.setScale(PRICE_SCALE);
+    if (encoded.scale() > Byte.MAX_VALUE || encoded.unscaledValue().bitLength() >= Long.SIZE)
+      throw new IllegalArgumentException("Price has too many digits to be stored: " + price);
+
+    return encoded;
+  }
+
+  /**
+   * Checks whether a price is within the price range of a filter.
+   * 
+   * @param price  the price.
+   * @param filter the {@link ProductFilter} with the price range.
+   * @return {@code true} if the price is within the range.
+   */
+  private static boolean isWithin(BigDecimal price, ProductFilter filter) {
+    return (filter.getMinPrice() == null || price.compareTo(filter.getMinPrice()) >= 0)
+        && (filter.getMaxPrice() == null || price.compareTo(filter.getMaxPrice()) <= 0);
+  }
+
+  /**
+   * Converts a price bound of a filter into minor units, saturating bounds
+   * that do not fit in a {@code long}.
+   * 
+   * @param price    the price bound.
+   * @param rounding the {@link RoundingMode} keeping the bound inclusive.
+   * @return the price bound in minor units.
+   */
+  private static long toMinorUnits(BigDecimal price, RoundingMode rounding) {
+    BigInteger minorUnits = price.setScale(PRICE_SCALE, rounding).unscaledValue();
+    if (minorUnits.bitLength() < Long.SIZE)
+      return minorUnits.longValue();
+
+    return minorUnits.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+  }
+}
@@ -0,0 +1,70 @@
+package com.drevotiuk.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.bson.types.ObjectId;
+
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+/**
+ * {@link CatalogStore} holding {@link ProductView} objects on the heap in a
+ * {@link ConcurrentSkipListMap} keyed by ID.
+ */
+public class HeapCatalogStore implements CatalogStore {
+  private final ConcurrentSkipListMap<ObjectId, ProductView> products = new ConcurrentSkipListMap<>();
+
+  @Override
+  public Optional<ProductView> find(ObjectId productId) {
+    return Optional.ofNullable(products.get(productId));
+  }
+
+  @Override
+  public List<ProductView> findAfter(ProductFilter filter, ObjectId after, int count) {
+    List<ProductView> found = new ArrayList<>(count);
+    for (ProductView product : products.tailMap(after, false).values()) {
+      if (found.size() == count)
+        break;
+
+      if (matches(product, filter))
+        found.add(product);
+    }
+
+    return found;
+  }
+
+  @Override
+  public void put(ProductView product) {
+    products.put(product.getId(), product);
+  }
+
+  @Override
+  public void remove(ObjectId productId) {
+    products.remove(productId);
+  }
+
+  @Override
+  public int size() {
+    return products.size();
+  }
+
+  /**
+   * Checks whether a product matches a filter.
+   * 
+   * @param product the {@link ProductView} to check.
+   * @param filter  the {@link ProductFilter} to match.
+   * @return {@code true} if the product matches every criterion of the filter.
+   */
+  private boolean matches(ProductView product, ProductFilter filter) {
+    if (filter.getCategory() != null && !filter.getCategory().name().equals(product.getCategory()))
+      return false;
+    if (filter.getMinPrice() != null && product.getPrice().compareTo(filter.getMinPrice()) < 0)
+      return false;
+    if (filter.getMaxPrice() != null && product.getPrice().compareTo(filter.getMaxPrice()) > 0)
+      return false;
+    return !filter.isInStock() || product.getQty() > 0;
+  }
+}
@@ -0,0 +1,126 @@
+package com.drevotiuk.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.ProcessedMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component detecting redelivered messages.
+ * <p>
+ * Processed message IDs are recorded in the "processed_messages" collection,
+ * whose documents expire after a configured time to live, and in a bounded
+ * in-memory set of recent IDs, so most duplicates are dropped without a
+ * database round trip.
+ * </p>
+ */
+@Component
+@Slf4j
+public class MessageDeduplicator {
+  private final MongoTemplate mongoTemplate;
+  private final Duration ttl;
+  private final Cache<String, Boolean> recentIds;
+
+  /**
+   * Creates a {@link MessageDeduplicator} with the given bounds.
+   * 
+   * @param mongoTemplate the {@link MongoTemplate} used to record processed
+   *                      messages.
+   * @param ttl           the time after which a processed message is forgotten.
+   * @param recentSize    the maximum number of message IDs kept in memory.
+   */
+  public MessageDeduplicator(MongoTemplate mongoTemplate, @Value("${product.dedup.ttl}") Duration ttl,
+      @Value("${product.dedup.recent-size}") long recentSize) {
+    this.mongoTemplate = mongoTemplate;
+    this.ttl = ttl;
+    this.recentIds = Caffeine.newBuilder()
+        .maximumSize(recentSize)
+        .expireAfterWrite(ttl)
+        .build();
+  }
+
+  /**
+   * Ensures the TTL index expiring processed messages exists.
+   */
+  @PostConstruct
+  public void ensureIndex() {
+    mongoTemplate.indexOps(ProcessedMessage.class)
+        .ensureIndex(new Index().on("processedAt", Sort.Direction.ASC).expire(ttl));
+  }
+
+  /**
+   * Checks whether a message has been processed before.
+   * <p>
+   * Messages without an ID cannot be deduplicated and are never reported as
+   * processed.
+   * </p>
+   * 
+   * @param listener  the name of the consuming listener.
+   * @param messageId the ID of the message, may be {@code null}.
+   * @return {@code true} if the message is a duplicate and should be dropped,
+   *         {@code false} if it should be processed.
+   */
+  public boolean isProcessed(String listener, String messageId) {
+    if (messageId == null)
+      return false;
+
+    String key = createKey(listener, messageId);
+    if (recentIds.getIfPresent(key) == null
+        && !mongoTemplate.exists(new Query(Criteria.where("_id").is(key)), ProcessedMessage.class))
+      return false;
+
+    recentIds.put(key, Boolean.TRUE);
+    log.warn("Dropping duplicate message {} for {}", messageId, listener);
+    return true;
+  }
+
+  /**
+   * Records a message as processed, so that redeliveries are dropped.
+   * <p>
+   * Must only be called once the effects of the message are durable. A message
+   * recorded concurrently by another instance is ignored.
+   * </p>
+   * 
+   * @param listener  the name of the consuming listener.
+   * @param messageId the ID of the message, may be {@code null}.
+   */
+  public void markProcessed(String listener, String messageId) {
+    if (messageId == null)
+      return;
+
+    String key = createKey(listener, messageId);
+    try {
+      mongoTemplate.insert(new ProcessedMessage(key, Instant.now()));
+    } catch (DuplicateKeyException e) {
+      log.warn("Message {} for {} was processed concurrently", messageId, listener);
+    }
+
+    recentIds.put(key, Boolean.TRUE);
+  }
+
+  /**
+   * Creates the key of a message, scoped to the consuming listener.
+   * 
+   * @param listener  the name of the consuming listener.
+   * @param messageId the ID of the message.
+   * @return the key of the message.
+   */
+  private String createKey(String listener, String messageId) {
+    return listener + ":" + messageId;
+  }
+}
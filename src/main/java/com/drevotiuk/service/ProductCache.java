@@ -0,0 +1,128 @@
+package com.drevotiuk.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.ProductView;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process read-through cache of products.
+ * <p>
+ * Products are cached as {@link ProductView} objects, which hold every field
+ * the read paths need. The cache is bounded by size and entries expire after
+ * a configured time to live.
+ * Missing products are not cached. Hit, miss and eviction statistics are
+ * published as cache metrics named {@value #CACHE_NAME}.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ProductCache implements MeterBinder {
+  private static final String CACHE_NAME = "products";
+
+  private final Cache<ObjectId, ProductView> cache;
+
+  /**
+   * Creates a {@link ProductCache} with the given bounds.
+   * 
+   * @param maxSize the maximum number of cached products.
+   * @param ttl     the time after which a cached product expires.
+   */
+  public ProductCache(@Value("${product.cache.max-size}") long maxSize,
+      @Value("${product.cache.ttl}") Duration ttl) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Retrieves a product from the cache, loading it with the given loader on a
+   * cache miss.
+   * 
+   * @param productId the ID of the product to retrieve, must not be {@code null}.
+   * @param loader    the function loading the product on a cache miss.
+   * @return an {@link Optional} containing the product, or empty if the loader
+   *         did not find it.
+   */
+  public Optional<ProductView> get(ObjectId productId, Function<ObjectId, Optional<ProductView>> loader) {
+    return Optional.ofNullable(cache.get(productId, id -> loader.apply(id).orElse(null)));
+  }
+
+  /**
+   * Retrieves several products from the cache, loading all missing ones with a
+   * single call of the given loader.
+   * 
+   * @param productIds the IDs of the products to retrieve.
+   * @param loader     the function loading the products missing in the cache.
+   * @return a {@link Map} of product IDs to products, without entries for
+   *         products the loader did not find.
+   */
+  public Map<ObjectId, ProductView> getAll(Collection<ObjectId> productIds,
+      Function<List<ObjectId>, List<ProductView>> loader) {
+    return cache.getAll(productIds, missingIds -> {
+      List<ObjectId> ids = new ArrayList<>();
+      missingIds.forEach(ids::add);
+      return loader.apply(ids).stream()
+          .collect(Collectors.toMap(ProductView::getId, Function.identity()));
+    });
+  }
+
+  /**
+   * Evicts a product from the cache.
+   * 
+   * @param productId the ID of the product to evict, must not be {@code null}.
+   */
+  public void evict(ObjectId productId) {
+    log.debug("Evicting product with ID {} from cache", productId);
+    cache.invalidate(productId);
+  }
+
+  /**
+   * Evicts all products from the cache.
+   */
+  public void evictAll() {
+    log.debug("Evicting all products from cache");
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the hit, miss and eviction statistics of the cache.
+   * 
+   * @return a {@link CacheStats} snapshot.
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Binds the statistics of the cache to the given registry.
+   * 
+   * @param registry the {@link MeterRegistry} to bind the cache metrics to.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+  }
+}
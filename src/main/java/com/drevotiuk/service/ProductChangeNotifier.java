@@ -0,0 +1,133 @@
+package com.drevotiuk.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.ProductChangedEvent;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Component propagating product changes to every instance of the service.
+ * <p>
+ * Changes are applied to the local {@link ProductCache} synchronously and
+ * broadcast through RabbitMQ, where each instance consumes them from its own
+ * anonymous queue.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductChangeNotifier {
+  private final ProductCache productCache;
+  private final AmqpTemplate amqpTemplate;
+
+  @Value("${rabbitmq.exchange.product-service}")
+  private String productServiceExchange;
+  @Value("${rabbitmq.routingkey.product-changed}")
+  private String productChangedRoutingKey;
+
+  /**
+   * Creates the update time to write to changed products and to broadcast as
+   * the version of the change.
+   * <p>
+   * The time is truncated to milliseconds, the precision it is stored with.
+   * </p>
+   * 
+   * @return the current time in milliseconds.
+   */
+  public static Instant createUpdateTime() {
+    return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  /**
+   * Evicts a changed product locally and broadcasts the change to other
+   * instances.
+   * <p>
+   * A failed broadcast is logged and does not fail the caller, as the change is
+   * already persisted and other instances fall back to the cache TTL.
+   * </p>
+   * 
+   * @param productId the ID of the changed product, must not be {@code null}.
+   * @param updatedAt the update time written to the product, or the time of
+   *                  its deletion.
+   */
+  public void notifyChanged(ObjectId productId, Instant updatedAt) {
+    notifyChanged(List.of(productId), updatedAt);
+  }
+
+  /**
+   * Evicts changed products locally and broadcasts the change of all of them
+   * to other instances as a single event.
+   * 
+   * @param productIds the IDs of the changed products; nothing is broadcast if
+   *                   empty.
+   * @param updatedAt  the update time written to the products.
+   */
+  public void notifyChanged(Collection<ObjectId> productIds, Instant updatedAt) {
+    if (productIds.isEmpty())
+      return;
+
+    productIds.forEach(productCache::evict);
+    broadcast(productIds.stream().map(ObjectId::toHexString).collect(Collectors.toList()), updatedAt);
+  }
+
+  /**
+   * Evicts all products locally and broadcasts that any product may have
+   * changed.
+   * <p>
+   * Used by bulk writes, where the IDs of the changed products are not known.
+   * </p>
+   * 
+   * @param updatedAt the update time written to the changed products.
+   */
+  public void notifyAllChanged(Instant updatedAt) {
+    productCache.evictAll();
+    broadcast(null, updatedAt);
+  }
+
+  /**
+   * Consumes product change broadcasts and evicts the changed products, or all
+   * products, from the local {@link ProductCache}.
+   * 
+   * @param event the {@link ProductChangedEvent} describing the change.
+   */
+  @RabbitListener(queues = { "#{productChangedQueue.name}" })
+  public void consumeProductChanged(ProductChangedEvent event) {
+    log.debug("Received product change: {}", event);
+    if (event.getProductIds() == null)
+      productCache.evictAll();
+    else
+      event.getProductIds().forEach(productId -> productCache.evict(new ObjectId(productId)));
+  }
+
+  /**
+   * Broadcasts a product change to other instances.
+   * <p>
+   * A failed broadcast is logged and does not fail the caller.
+   * </p>
+   * 
+   * @param productIds the IDs of the changed products, or {@code null} if any
+   *                   product may have changed.
+   * @param updatedAt  the update time written to the changed products.
+   */
+  private void broadcast(List<String> productIds, Instant updatedAt) {
+    ProductChangedEvent event = new ProductChangedEvent(productIds, updatedAt.toEpochMilli());
+    try {
+      amqpTemplate.convertAndSend(productServiceExchange, productChangedRoutingKey, event);
+    } catch (AmqpException e) {
+      log.error("Failed to broadcast change of products {}", productIds == null ? "all" : productIds, e);
+    }
+  }
+}
@@ -1,23 +1,60 @@
 package com.drevotiuk.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
 import org.bson.types.ObjectId;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
 
 import com.drevotiuk.model.OrderItem;
 import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSuggestion;
+import com.drevotiuk.model.ProductUpsertResult;
+import com.drevotiuk.model.ProductUpsertStatus;
 import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateRequest;
+import com.drevotiuk.model.StockUpdateResult;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
 import com.drevotiuk.model.exception.ProductExistsException;
 import com.drevotiuk.repository.ProductRepository;
-import com.mongodb.MongoException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+
+import io.micrometer.core.annotation.Timed;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -34,25 +71,78 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 @Slf4j
 public class ProductManagementService {
+  private static final int EXPORT_BATCH_SIZE = 1000;
+  private static final int UPSERT_CHUNK_SIZE = 1000;
+  private static final String FETCH_QTY_LISTENER = "fetch-qty";
+  private static final String RESTORE_QTY_LISTENER = "restore-qty";
+  private static final TypeReference<List<OrderItem>> ORDER_ITEMS_TYPE = new TypeReference<List<OrderItem>>() {
+  };
+
   private final ProductRepository repository;
   private final ProductServiceUtils serviceUtils;
   private final MongoTemplate mongoTemplate;
+  private final ObjectMapper objectMapper;
+  private final ProductChangeNotifier changeNotifier;
+  private final ProductNameIndex nameIndex;
+  private final StockService stockService;
+  private final AmqpTemplate amqpTemplate;
+  private final MessageDeduplicator deduplicator;
+  private final Validator validator;
+
+  @Value("${rabbitmq.exchange.product-service}")
+  private String productServiceExchange;
+  @Value("${rabbitmq.routingkey.stock-reserved}")
+  private String stockReservedRoutingKey;
 
   /**
-   * Retrieves a list of all products.
+   * Retrieves a page of products in ascending ID order and maps them to
+   * {@link ProductView} objects.
    * <p>
    * Logs the number of products fetched.
    * </p>
    * 
-   * @return a {@link List} of {@link ProductView} objects representing all
-   *         products.
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link ProductPage} containing the products of the page and the
+   *         cursor of the next one.
+   * @throws InvalidPageRequestException if the cursor or limit is invalid.
    */
-  public List<ProductView> findAll() {
-    List<ProductView> products = repository.findAll().stream()
-        .map(ProductView::new)
-        .collect(Collectors.toList());
-    log.info("Fetched {} products", products.size());
-    return products;
+  public ProductPage findAll(String cursor, int limit) {
+    ObjectId after = serviceUtils.decodeCursor(cursor);
+    List<ProductView> products = repository.findViewsByIdGreaterThan(after, serviceUtils.createPageRequest(limit));
+    ProductPage page = serviceUtils.createPage(products, limit);
+    log.info("Fetched {} products", page.getItems().size());
+    return page;
+  }
+
+  /**
+   * Exports all products as newline-delimited JSON.
+   * <p>
+   * Products are read through a database cursor and written one by one, so
+   * memory usage does not depend on the catalog size. Only the fields of
+   * {@link ProductView} are read. Logs the number of products exported.
+   * </p>
+   * 
+   * @param outputStream the {@link OutputStream} to write the products to.
+   * @throws IOException if writing to the output stream fails.
+   */
+  public void export(OutputStream outputStream) throws IOException {
+    Query query = new Query().cursorBatchSize(EXPORT_BATCH_SIZE);
+    query.fields().include("name", "category", "price", "qty");
+    ObjectWriter writer = objectMapper.writerFor(ProductView.class);
+    long exported = 0;
+    try (CloseableIterator<ProductView> products = mongoTemplate.stream(query, ProductView.class,
+        mongoTemplate.getCollectionName(Product.class))) {
+      while (products.hasNext()) {
+        outputStream.write(writer.writeValueAsBytes(products.next()));
+        outputStream.write('\n');
+        exported++;
+      }
+    }
+
+    outputStream.flush();
+    log.info("Exported {} products", exported);
   }
 
   /**
@@ -66,7 +156,8 @@ public class ProductManagementService {
    */
   public ProductView find(ObjectId productId) {
     log.info("Fetching product with ID {}", productId);
-    return new ProductView(findById(productId));
+    return repository.findViewById(productId)
+        .orElseThrow(() -> serviceUtils.createProductNotFoundException(productId));
   }
 
   /**
@@ -80,20 +171,69 @@ public class ProductManagementService {
    */
   public ProductView create(Product product) {
     product.setId(ObjectId.get());
+    product.setUpdatedAt(ProductChangeNotifier.createUpdateTime());
     log.info("Adding new product: {}", product);
     if (repository.existsByName(product.getName())) {
       log.warn("Product with name {} already exists", product.getName());
       throw new ProductExistsException(String.format("Product with name %s already exists", product.getName()));
     }
 
-    repository.save(product);
+    try {
+      repository.save(product);
+    } catch (DuplicateKeyException e) {
+      log.warn("Product with name {} was created concurrently", product.getName());
+      throw new ProductExistsException(String.format("Product with name %s already exists", product.getName()));
+    }
+
+    changeNotifier.notifyChanged(product.getId(), product.getUpdatedAt());
+    nameIndex.put(new ProductSuggestion(product));
     return new ProductView(product);
   }
 
+  /**
+   * Creates or updates products by name.
+   * <p>
+   * Products are written in chunks, each with one unordered bulk write of
+   * upserts keyed by the unique product name. Existing products keep their ID
+   * and stock: the quantity is only set when a product is created, so that
+   * pending reservations are not overwritten. Invalid products and products
+   * whose write failed are reported as failed without affecting the others.
+   * Notifies all instances that any product may have changed and adds the
+   * written products to the name index; updated products are read back by
+   * name, as the bulk write only returns the IDs of created ones.
+   * </p>
+   * 
+   * @param products the {@link Product} objects to upsert.
+   * @return a {@link List} of {@link ProductUpsertResult} objects, one per
+   *         product in the order of the request.
+   */
+  public List<ProductUpsertResult> upsertAll(List<Product> products) {
+    log.info("Upserting {} products", products.size());
+    Instant updatedAt = ProductChangeNotifier.createUpdateTime();
+    List<ProductUpsertResult> results = new ArrayList<>(products.size());
+    for (int offset = 0; offset < products.size(); offset += UPSERT_CHUNK_SIZE) {
+      List<Product> chunk = products.subList(offset, Math.min(offset + UPSERT_CHUNK_SIZE, products.size()));
+      results.addAll(upsertChunk(chunk, offset, updatedAt));
+    }
+
+    Map<ProductUpsertStatus, Long> counts = results.stream()
+        .collect(Collectors.groupingBy(ProductUpsertResult::getStatus, Collectors.counting()));
+    log.info("Upserted products: {}", counts);
+    if (counts.keySet().stream().anyMatch(status -> status != ProductUpsertStatus.FAILED)) {
+      changeNotifier.notifyAllChanged(updatedAt);
+      indexUpserted(products, results);
+    }
+
+    return results;
+  }
+
   /**
    * Updates an existing product with new details.
    * <p>
-   * Logs the details of the update process.
+   * Only the given fields are set, with a single atomic write, so concurrent
+   * stock updates and the reservation tags of the product are kept. Logs the
+   * details of the update process and notifies all instances of the change,
+   * unless no field was given.
    * </p>
    * 
    * @param productId the ID of the product to update, must not be {@code null}.
@@ -103,17 +243,25 @@ public class ProductManagementService {
    */
   public ProductView update(ObjectId productId, Product product) {
     log.info("Updating product with ID: {}", productId);
-    Product initialProduct = findById(productId);
-    updateFields(initialProduct, product);
-    repository.save(initialProduct);
-    return new ProductView(initialProduct);
+    Update update = createUpdate(productId, product);
+    if (update.getUpdateObject().isEmpty())
+      return new ProductView(findById(productId));
+
+    Instant updatedAt = ProductChangeNotifier.createUpdateTime();
+    Product updatedProduct = Optional.ofNullable(mongoTemplate.findAndModify(
+        new Query(Criteria.where("_id").is(productId)), update.set("updatedAt", updatedAt),
+        FindAndModifyOptions.options().returnNew(true), Product.class))
+        .orElseThrow(() -> serviceUtils.createProductNotFoundException(productId));
+    changeNotifier.notifyChanged(productId, updatedAt);
+    nameIndex.put(new ProductSuggestion(updatedProduct));
+    return new ProductView(updatedProduct);
   }
 
   /**
    * Deletes a product by its ID.
    * <p>
-   * Logs the ID of the product being deleted. Throws an exception if the product
-   * does not exist.
+   * Logs the ID of the product being deleted and notifies all instances of the
+   * change. Throws an exception if the product does not exist.
    * </p>
    * 
    * @param productId the ID of the product to delete, must not be {@code null}.
@@ -126,38 +274,57 @@ public class ProductManagementService {
       throw serviceUtils.createProductNotFoundException(productId);
 
     repository.deleteById(productId);
+    changeNotifier.notifyChanged(productId, ProductChangeNotifier.createUpdateTime());
+    nameIndex.remove(productId);
   }
 
   /**
-   * Consumes messages from the fetch quantity queue and updates product
-   * quantities.
+   * Consumes batches of messages from the fetch quantity queue and reserves
+   * product quantities.
    * <p>
-   * Logs details of the received message and processes the quantity updates.
+   * Logs details of the received messages and applies the quantity updates of
+   * the whole batch through the {@link StockService}. The outcome of each order
+   * is published to the order service with the reservation ID as the
+   * correlation ID, except for orders with a failed item, which are
+   * redelivered. Messages processed before are dropped.
    * </p>
    * 
-   * @param orderItems a {@link List} of {@link OrderItem} objects containing
-   *                   product IDs and quantities.
+   * @param messages a {@link List} of {@link Message} objects, each containing
+   *                 the {@link OrderItem} objects of an order. The message ID
+   *                 is used as the reservation ID; messages without an ID
+   *                 are dropped.
    */
-  @RabbitListener(queues = { "${rabbitmq.queue.fetch-qty}" })
-  public void consumeFetchQty(List<OrderItem> orderItems) {
-    log.info("Received message for fetching quantity: {}", orderItems);
-    updateProductQuantities(orderItems, false);
+  @RabbitListener(id = FETCH_QTY_LISTENER, queues = { "${rabbitmq.queue.fetch-qty}" },
+      containerFactory = "fetchQtyContainerFactory")
+  @Timed(value = "product.listener", extraTags = { "listener", FETCH_QTY_LISTENER })
+  public void consumeFetchQty(List<Message> messages) {
+    log.info("Received {} messages for fetching quantity", messages.size());
+    List<StockUpdateResult> results = updateStock(FETCH_QTY_LISTENER, messages, stockService::fetch,
+        this::publishStockReserved);
+    log.info("Fetched quantity: {}", results);
   }
 
   /**
-   * Consumes messages from the restore quantity queue and restores product
-   * quantities.
+   * Consumes batches of messages from the restore quantity queue and restores
+   * product quantities.
    * <p>
-   * Logs details of the received message and processes the quantity restorations.
+   * Logs details of the received messages and applies the quantity
+   * restorations of the whole batch through the {@link StockService}. Orders
+   * with a failed item are redelivered. Messages processed before are dropped.
    * </p>
    * 
-   * @param orderItems a {@link List} of {@link OrderItem} objects containing
-   *                   product IDs and quantities.
+   * @param messages a {@link List} of {@link Message} objects, each containing
+   *                 the {@link OrderItem} objects of an order. Messages
+   *                 without an ID are dropped.
    */
-  @RabbitListener(queues = { "${rabbitmq.queue.restore-qty}" })
-  public void consumeRestoreQty(List<OrderItem> orderItems) {
-    log.info("Received message for restoring quantity: {}", orderItems);
-    updateProductQuantities(orderItems, true);
+  @RabbitListener(id = RESTORE_QTY_LISTENER, queues = { "${rabbitmq.queue.restore-qty}" },
+      containerFactory = "restoreQtyContainerFactory")
+  @Timed(value = "product.listener", extraTags = { "listener", RESTORE_QTY_LISTENER })
+  public void consumeRestoreQty(List<Message> messages) {
+    log.info("Received {} messages for restoring quantity", messages.size());
+    List<StockUpdateResult> results = updateStock(RESTORE_QTY_LISTENER, messages, stockService::restore,
+        result -> log.debug("Restored quantity of stock update {}", result.getReservationId()));
+    log.info("Restored quantity: {}", results);
   }
 
   /**
@@ -178,67 +345,335 @@ public class ProductManagementService {
   }
 
   /**
-   * Updates the fields of the initial product with values from the updated
-   * product.
+   * Applies the stock updates requested by a batch of messages with a single
+   * call to the {@link StockService}.
+   * <p>
+   * Messages without an ID, which cannot be read or were processed before are
+   * skipped; a message without an ID is dropped rather than applied, as its
+   * redeliveries could not be told apart and would update the stock again. A
+   * message is recorded as processed only after its update was applied and
+   * handled, so a failure at any point leaves it to be redelivered; the stock
+   * write itself skips products already tagged with the reservation ID, so a
+   * redelivered update is not applied twice. Once recorded, the reservation
+   * tags of the update are cleared, also for redelivered messages whose tags
+   * were left by an interrupted batch. If any update has a failed item or
+   * cannot be handled, for example because its outcome cannot be published,
+   * the batch is rejected once the other updates are recorded, so that only
+   * the failed ones are processed again.
+   * </p>
+   * 
+   * @param listener the name of the consuming listener.
+   * @param messages the {@link Message} objects of the batch.
+   * @param update   the {@link StockService} operation to apply.
+   * @param handler  the action to run for every update without failed items
+   *                 before it is recorded; an update whose action fails is not
+   *                 recorded.
+   * @return a {@link List} of {@link StockUpdateResult} objects, one per
+   *         processed message.
+   * @throws IllegalStateException if any update has a failed item or cannot be
+   *                               handled.
+   */
+  private List<StockUpdateResult> updateStock(String listener, List<Message> messages,
+      Function<List<StockUpdateRequest>, List<StockUpdateResult>> update, Consumer<StockUpdateResult> handler) {
+    List<StockUpdateRequest> requests = new ArrayList<>();
+    List<String> messageIds = new ArrayList<>();
+    List<StockUpdateRequest> processed = new ArrayList<>();
+    for (Message message : messages) {
+      String messageId = message.getMessageProperties().getMessageId();
+      if (messageId == null) {
+        log.error("Dropping message without ID, its stock update cannot be deduplicated");
+        continue;
+      }
+
+      Optional<List<OrderItem>> orderItems = readOrderItems(message);
+      if (!orderItems.isPresent())
+        continue;
+
+      StockUpdateRequest request = new StockUpdateRequest(messageId, orderItems.get());
+      if (deduplicator.isProcessed(listener, messageId)) {
+        processed.add(request);
+        continue;
+      }
+
+      messageIds.add(messageId);
+      requests.add(request);
+    }
+
+    List<StockUpdateResult> results = requests.isEmpty() ? List.of() : update.apply(requests);
+    long failed = 0;
+    for (int index = 0; index < results.size(); index++) {
+      StockUpdateResult result = results.get(index);
+      if (hasFailedItem(result)) {
+        failed++;
+        continue;
+      }
+
+      try {
+        handler.accept(result);
+      } catch (RuntimeException e) {
+        log.error("Cannot handle stock update {}, it will be redelivered", result.getReservationId(), e);
+        failed++;
+        continue;
+      }
+
+      deduplicator.markProcessed(listener, messageIds.get(index));
+      processed.add(requests.get(index));
+    }
+
+    if (!processed.isEmpty())
+      stockService.clearReservations(processed);
+    if (failed > 0)
+      throw new IllegalStateException(
+          String.format("%d of %d stock updates failed and will be redelivered", failed, results.size()));
+    return results;
+  }
+
+  /**
+   * Checks whether a stock update has an item with an unknown outcome.
+   * 
+   * @param result the {@link StockUpdateResult} to check.
+   * @return {@code true} if any item has status {@link StockItemStatus#FAILED}.
+   */
+  private boolean hasFailedItem(StockUpdateResult result) {
+    return result.getItems().stream().anyMatch(item -> item.getStatus() == StockItemStatus.FAILED);
+  }
+
+  /**
+   * Reads the order items from the body of a message.
+   * <p>
+   * Logs an error if the body is not a valid list of order items.
+   * </p>
+   * 
+   * @param message the {@link Message} to read.
+   * @return an {@link Optional} containing the {@link OrderItem} objects, or
+   *         empty if the body cannot be read.
+   */
+  private Optional<List<OrderItem>> readOrderItems(Message message) {
+    try {
+      return Optional.of(objectMapper.readValue(message.getBody(), ORDER_ITEMS_TYPE));
+    } catch (IOException e) {
+      log.error("Dropping unreadable message {}", message.getMessageProperties().getMessageId(), e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Adds the created and updated products of an upsert request to the name
+   * index.
+   * <p>
+   * Updated products are read by name in chunks, with the fields of a
+   * suggestion. If they cannot be read, a rebuild of the index is requested
+   * instead.
+   * </p>
+   * 
+   * @param products the {@link Product} objects of the request.
+   * @param results  the {@link ProductUpsertResult} objects of the request.
+   */
+  private void indexUpserted(List<Product> products, List<ProductUpsertResult> results) {
+    List<ProductSuggestion> suggestions = new ArrayList<>();
+    List<String> updatedNames = new ArrayList<>();
+    for (ProductUpsertResult result : results) {
+      Product product = products.get(result.getIndex());
+      if (result.getStatus() == ProductUpsertStatus.CREATED)
+        suggestions.add(new ProductSuggestion(new ObjectId(result.getProductId()), product.getName(),
+            product.getCategory().name(), product.getPrice()));
+      else if (result.getStatus() == ProductUpsertStatus.UPDATED)
+        updatedNames.add(product.getName());
+    }
+
+    try {
+      for (int offset = 0; offset < updatedNames.size(); offset += UPSERT_CHUNK_SIZE) {
+        Query query = new Query(Criteria.where("name")
+            .in(updatedNames.subList(offset, Math.min(offset + UPSERT_CHUNK_SIZE, updatedNames.size()))));
+        query.fields().include("name", "category", "price");
+        suggestions.addAll(mongoTemplate.find(query, ProductSuggestion.class,
+            mongoTemplate.getCollectionName(Product.class)));
+      }
+    } catch (DataAccessException e) {
+      log.error("Failed to read {} updated products, rebuilding the name index", updatedNames.size(), e);
+      nameIndex.requestRebuild();
+      return;
+    }
+
+    nameIndex.putAll(suggestions);
+  }
+
+  /**
+   * Upserts a chunk of products with one unordered bulk write.
+   * 
+   * @param chunk     the {@link Product} objects of the chunk.
+   * @param offset    the position of the first product of the chunk in the
+   *                  request.
+   * @param updatedAt the update time to write to the products.
+   * @return a {@link List} of {@link ProductUpsertResult} objects of the chunk.
+   */
+  private List<ProductUpsertResult> upsertChunk(List<Product> chunk, int offset, Instant updatedAt) {
+    ProductUpsertResult[] results = new ProductUpsertResult[chunk.size()];
+    List<Integer> positions = new ArrayList<>();
+    BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    for (int position = 0; position < chunk.size(); position++) {
+      Product product = chunk.get(position);
+      Optional<String> error = validateForUpsert(product);
+      if (error.isPresent()) {
+        results[position] = createUpsertResult(offset + position, product, null, ProductUpsertStatus.FAILED,
+            error.get());
+        continue;
+      }
+
+      bulkOperations.upsert(new Query(Criteria.where("name").is(product.getName())), new Update()
+          .set("category", product.getCategory())
+          .set("price", product.getPrice())
+          .set("updatedAt", updatedAt)
+          .setOnInsert("qty", product.getQty()));
+      positions.add(position);
+    }
+
+    if (!positions.isEmpty())
+      applyUpserts(bulkOperations, chunk, offset, positions, results);
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Executes the upserts of a chunk and resolves the outcome for each of them
+   * from the bulk write result.
+   * 
+   * @param bulkOperations the {@link BulkOperations} holding the upserts.
+   * @param chunk          the {@link Product} objects of the chunk.
+   * @param offset         the position of the first product of the chunk in
+   *                       the request.
+   * @param positions      the positions within the chunk of the products
+   *                       added to the bulk write, in the order they were
+   *                       added.
+   * @param results        the results of the chunk to fill in.
+   */
+  private void applyUpserts(BulkOperations bulkOperations, List<Product> chunk, int offset,
+      List<Integer> positions, ProductUpsertResult[] results) {
+    BulkWriteResult writeResult;
+    List<BulkWriteError> errors;
+    try {
+      writeResult = bulkOperations.execute();
+      errors = List.of();
+    } catch (BulkOperationException e) {
+      log.warn("Failed to upsert {} of {} products", e.getErrors().size(), positions.size());
+      writeResult = e.getResult();
+      errors = e.getErrors();
+    } catch (DataAccessException e) {
+      log.error("Failed to upsert {} products", positions.size(), e);
+      positions.forEach(position -> results[position] = createUpsertResult(offset + position, chunk.get(position),
+          null, ProductUpsertStatus.FAILED, e.getMostSpecificCause().getMessage()));
+      return;
+    }
+
+    Map<Integer, ObjectId> createdIds = writeResult.getUpserts().stream()
+        .collect(Collectors.toMap(BulkWriteUpsert::getIndex, upsert -> upsert.getId().asObjectId().getValue()));
+    Map<Integer, String> failures = errors.stream()
+        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+    for (int index = 0; index < positions.size(); index++) {
+      int position = positions.get(index);
+      Product product = chunk.get(position);
+      if (failures.containsKey(index))
+        results[position] = createUpsertResult(offset + position, product, null, ProductUpsertStatus.FAILED,
+            failures.get(index));
+      else if (createdIds.containsKey(index))
+        results[position] = createUpsertResult(offset + position, product, createdIds.get(index),
+            ProductUpsertStatus.CREATED, null);
+      else
+        results[position] = createUpsertResult(offset + position, product, null, ProductUpsertStatus.UPDATED, null);
+    }
+  }
+
+  /**
+   * Checks a product of a bulk request against the constraints declared on
+   * {@link Product}, as {@code @Valid} does for a single product.
+   * 
+   * @param product the {@link Product} to check.
+   * @return an {@link Optional} containing the violated constraints if the
+   *         product is invalid, or empty if it is valid.
+   */
+  private Optional<String> validateForUpsert(Product product) {
+    if (product == null)
+      return Optional.of("Product is required");
+
+    Set<ConstraintViolation<Product>> violations = validator.validate(product);
+    if (violations.isEmpty())
+      return Optional.empty();
+
+    return Optional.of(violations.stream()
+        .map(ConstraintViolation::getMessage)
+        .sorted()
+        .collect(Collectors.joining(", ")));
+  }
+
+  /**
+   * Creates the result of a single product of a bulk request.
+   * 
+   * @param index     the position of the product in the request.
+   * @param product   the {@link Product} of the request, may be {@code null}.
+   * @param productId the ID of the created product, or {@code null} if it was
+   *                  not created.
+   * @param status    the {@link ProductUpsertStatus} of the product.
+   * @param error     the reason the product failed, or {@code null}.
+   * @return a {@link ProductUpsertResult} instance.
+   */
+  private ProductUpsertResult createUpsertResult(int index, Product product, ObjectId productId,
+      ProductUpsertStatus status, String error) {
+    return new ProductUpsertResult(index, product == null ? null : product.getName(),
+        productId == null ? null : productId.toHexString(), status, error);
+  }
+
+  /**
+   * Publishes the outcome of a stock reservation to the order service.
+   * <p>
+   * A reservation whose outcome cannot be published is not recorded as
+   * processed, so its message is redelivered and the outcome, resolved again
+   * from the reservation tags, is published then.
+   * </p>
+   * 
+   * @param result the {@link StockUpdateResult} of the reservation, its ID is
+   *               used as the correlation ID.
+   */
+  private void publishStockReserved(StockUpdateResult result) {
+    amqpTemplate.convertAndSend(productServiceExchange, stockReservedRoutingKey, result, message -> {
+      message.getMessageProperties().setCorrelationId(result.getReservationId());
+      return message;
+    });
+  }
+
+
+  /**
+   * Creates the update setting the fields of a product to values from the
+   * updated product.
    * <p>
-   * Only non-null and valid values from the {@code updated} product are used to
-   * update the {@code initial}
-   * product. Fields that are updated include name, category, price, and quantity.
-   * Logs details of each field that is updated.
+   * Only non-null and valid values from the {@code updated} product are set.
+   * Fields that are updated include category, price, and quantity. Logs
+   * details of each field that is updated.
    * </p>
    * 
-   * @param initial the {@link Product} object to be updated, must not be
-   *                {@code null}.
-   * @param updated the {@link Product} object containing the new values, must not
-   *                be {@code null}.
+   * @param productId the ID of the product to be updated, must not be
+   *                  {@code null}.
+   * @param updated   the {@link Product} object containing the new values, must
+   *                  not be {@code null}.
+   * @return an {@link Update} setting the new values, empty if there are none.
    */
-  private void updateFields(Product initial, Product updated) {
+  private Update createUpdate(ObjectId productId, Product updated) {
+    Update update = new Update();
     Optional.ofNullable(updated.getCategory())
         .ifPresent(category -> {
-          log.info("Updated category for product with ID {}: {}", initial.getId(), category);
-          initial.setCategory(category);
+          log.info("Updated category for product with ID {}: {}", productId, category);
+          update.set("category", category);
         });
     Optional.ofNullable(updated.getPrice())
         .filter(price -> price.doubleValue() > 0)
         .ifPresent(price -> {
-          log.info("Updated price for product with ID {}: {}", initial.getId(), price);
-          initial.setPrice(price);
+          log.info("Updated price for product with ID {}: {}", productId, price);
+          update.set("price", price);
         });
     Optional.ofNullable(updated.getQty())
         .filter(qty -> qty > 0)
         .ifPresent(qty -> {
-          log.info("Updated quantity for product with ID {}: {}", initial.getId(), qty);
-          initial.setQty(qty);
+          log.info("Updated quantity for product with ID {}: {}", productId, qty);
+          update.set("qty", qty);
         });
-  }
-
-  /**
-   * Updates product quantities based on the provided order items.
-   * <p>
-   * Performs either a quantity increase or decrease based on the
-   * {@code isRestoring} flag.
-   * </p>
-   * 
-   * @param orderItems  a {@link List} of {@link OrderItem} objects containing
-   *                    product IDs and quantities.
-   * @param isRestoring {@code true} if quantities are being restored,
-   *                    {@code false} if being fetched.
-   */
-  private void updateProductQuantities(List<OrderItem> orderItems, boolean isRestoring) {
-    try {
-      orderItems.forEach(item -> {
-        ObjectId id = new ObjectId(item.getProductId());
-        Query query = new Query(Criteria.where("_id").is(id));
-        ProductView product = find(id);
-        int updatedQty = isRestoring
-            ? product.getQty() + item.getQty()
-            : product.getQty() - item.getQty();
-
-        Update update = new Update().set("qty", updatedQty);
-        mongoTemplate.updateFirst(query, update, Product.class);
-      });
-    } catch (MongoException e) {
-      log.error("Database exception", e);
-    }
+    return update;
   }
 }
@@ -0,0 +1,98 @@
+package com.drevotiuk.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.StockItemResult;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateResult;
+import com.drevotiuk.model.StockVerdict;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Component recording business metrics of stock updates and pricing.
+ * <p>
+ * Meters are created once up front, so recording an outcome is a lookup in an
+ * {@link EnumMap} and an increment.
+ * </p>
+ */
+@Component
+public class ProductMetrics {
+  private static final String FETCH = "fetch";
+  private static final String RESTORE = "restore";
+
+  private final Map<StockItemStatus, Counter> fetchedItems;
+  private final Map<StockItemStatus, Counter> restoredItems;
+  private final Map<StockVerdict, Counter> pricedItems = new EnumMap<>(StockVerdict.class);
+  private final DistributionSummary fetchOrderItems;
+  private final DistributionSummary restoreOrderItems;
+
+  /**
+   * Creates the meters in the given registry.
+   * 
+   * @param registry the {@link MeterRegistry} to register the meters in.
+   */
+  public ProductMetrics(MeterRegistry registry) {
+    this.fetchedItems = createStockItemCounters(registry, FETCH);
+    this.restoredItems = createStockItemCounters(registry, RESTORE);
+    for (StockVerdict verdict : StockVerdict.values()) {
+      pricedItems.put(verdict, Counter.builder("product.pricing.items")
+          .description("Priced order items by stock verdict")
+          .tag("verdict", verdict.name())
+          .register(registry));
+    }
+
+    this.fetchOrderItems = createOrderItemsSummary(registry, FETCH);
+    this.restoreOrderItems = createOrderItemsSummary(registry, RESTORE);
+  }
+
+  /**
+   * Records the number of items of an order and the outcome of each item.
+   * 
+   * @param isRestoring {@code true} if quantities were restored, {@code false}
+   *                    if fetched.
+   * @param result      the {@link StockUpdateResult} of the order.
+   */
+  public void recordStockUpdate(boolean isRestoring, StockUpdateResult result) {
+    (isRestoring ? restoreOrderItems : fetchOrderItems).record(result.getItems().size());
+    Map<StockItemStatus, Counter> counters = isRestoring ? restoredItems : fetchedItems;
+    for (StockItemResult item : result.getItems())
+      counters.get(item.getStatus()).increment();
+  }
+
+  /**
+   * Records the stock verdict of a priced order item.
+   * 
+   * @param verdict the {@link StockVerdict} of the item.
+   */
+  public void recordPricing(StockVerdict verdict) {
+    pricedItems.get(verdict).increment();
+  }
+
+  private static Map<StockItemStatus, Counter> createStockItemCounters(MeterRegistry registry, String operation) {
+    Map<StockItemStatus, Counter> counters = new EnumMap<>(StockItemStatus.class);
+    for (StockItemStatus status : StockItemStatus.values()) {
+      counters.put(status, Counter.builder("product.stock.items")
+          .description("Order items of stock updates by outcome")
+          .tag("operation", operation)
+          .tag("status", status.name())
+          .register(registry));
+    }
+
+    return counters;
+  }
+
+  private static DistributionSummary createOrderItemsSummary(MeterRegistry registry, String operation) {
+    return DistributionSummary.builder("product.stock.order.items")
+        .description("Number of distinct products per order message")
+        .baseUnit("items")
+        .tag("operation", operation)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+}
@@ -0,0 +1,360 @@
+package com.drevotiuk.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductSuggestion;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of product names serving autocomplete suggestions.
+ * <p>
+ * Products are kept in two parallel arrays sorted by lower-case name and ID,
+ * so the products starting with a prefix are found with a binary search and
+ * returned in name order without a database round trip. The arrays are
+ * replaced as a whole on every change, so suggestions are read without
+ * locking, at the cost of a copy of the arrays per change; changes of a batch
+ * are applied with a single copy. The index is built in the background once
+ * the application is ready, updated by the management write path of this
+ * instance and rebuilt periodically to pick up changes made through other
+ * instances. Changes made while the index is rebuilt are replayed on the
+ * rebuilt index.
+ * </p>
+ * <p>
+ * Only one rebuild runs at a time. A rebuild requested while another one runs
+ * is coalesced with any other such request into a single rebuild that starts
+ * when the running one ends, so that it reads the products written since.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductNameIndex {
+  /** The maximum number of suggestions that can be requested at once. */
+  public static final int MAX_SUGGESTIONS = 20;
+
+  private static final int BUILD_BATCH_SIZE = 1000;
+
+  private final MongoTemplate mongoTemplate;
+  private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "product-name-index");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private volatile Index index = Index.EMPTY;
+  /** The changes made during a rebuild, {@code null} if no rebuild runs. */
+  private List<UnaryOperator<Index>> pendingChanges;
+  /** Whether another rebuild must follow the running one. */
+  private boolean rebuildRequested;
+
+  /**
+   * Returns the products whose names start with a prefix, ignoring case.
+   * 
+   * @param prefix the prefix of the product names.
+   * @param limit  the maximum number of suggestions.
+   * @return a {@link List} of {@link ProductSuggestion} objects in name order,
+   *         empty if the prefix is blank.
+   * @throws InvalidPageRequestException if the limit is out of the allowed
+   *                                     range.
+   */
+  public List<ProductSuggestion> suggest(String prefix, int limit) {
+    if (limit < 1 || limit > MAX_SUGGESTIONS) {
+      log.warn("Invalid suggestion limit: {}", limit);
+      throw new InvalidPageRequestException(
+          String.format("Suggestion limit must be between 1 and %d; got: %d", MAX_SUGGESTIONS, limit));
+    }
+
+    if (prefix == null || prefix.isBlank())
+      return List.of();
+
+    return index.find(normalize(prefix), limit);
+  }
+
+  /**
+   * Adds a product to the index or replaces its previous entry.
+   * 
+   * @param product the {@link ProductSuggestion} of the created or updated
+   *                product.
+   */
+  public void put(ProductSuggestion product) {
+    putAll(List.of(product));
+  }
+
+  /**
+   * Adds several products to the index or replaces their previous entries,
+   * with a single copy of the index.
+   * 
+   * @param products the {@link ProductSuggestion} objects of the created or
+   *                 updated products.
+   */
+  public void putAll(Collection<ProductSuggestion> products) {
+    if (products.isEmpty())
+      return;
+
+    Map<ObjectId, ProductSuggestion> latest = new LinkedHashMap<>();
+    products.forEach(product -> latest.put(product.getId(), product));
+    List<ProductSuggestion> added = List.copyOf(latest.values());
+    Set<ObjectId> productIds = Set.copyOf(latest.keySet());
+    apply(current -> current.with(added, productIds));
+  }
+
+  /**
+   * Removes a product from the index.
+   * 
+   * @param productId the ID of the deleted product.
+   */
+  public void remove(ObjectId productId) {
+    apply(current -> current.with(List.of(), Set.of(productId)));
+  }
+
+  /**
+   * Requests a rebuild of the index without waiting for it.
+   * <p>
+   * The rebuild runs on a background thread; requests made while it runs are
+   * coalesced as described for {@link #rebuild()}.
+   * </p>
+   */
+  public void requestRebuild() {
+    rebuilder.execute(this::rebuild);
+  }
+
+  /**
+   * Requests the first build of the index once the application is ready, so
+   * that startup does not wait for all products to be read.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    requestRebuild();
+  }
+
+  /**
+   * Rebuilds the index from all products periodically.
+   * <p>
+   * Products are read through a database cursor with only the fields of a
+   * suggestion. The index in use keeps serving suggestions until the rebuilt
+   * one replaces it. A failed rebuild is logged and keeps the current index.
+   * If a rebuild already runs, it is repeated once it ends instead.
+   * </p>
+   */
+  @Scheduled(initialDelayString = "${product.autocomplete.refresh-interval}",
+      fixedDelayString = "${product.autocomplete.refresh-interval}")
+  public void rebuild() {
+    synchronized (this) {
+      if (pendingChanges != null) {
+        rebuildRequested = true;
+        return;
+      }
+
+      pendingChanges = new ArrayList<>();
+    }
+
+    do {
+      buildIndex();
+    } while (continueRebuild());
+  }
+
+  /**
+   * Stops the background rebuilds.
+   */
+  @PreDestroy
+  public void shutdown() {
+    rebuilder.shutdownNow();
+  }
+
+  /**
+   * Reads all products into a new index and replaces the current one with it,
+   * replaying the changes made meanwhile.
+   */
+  private void buildIndex() {
+    List<ProductSuggestion> products = new ArrayList<>();
+    try {
+      Query query = new Query().cursorBatchSize(BUILD_BATCH_SIZE);
+      query.fields().include("name", "category", "price");
+      try (CloseableIterator<ProductSuggestion> cursor = mongoTemplate.stream(query, ProductSuggestion.class,
+          mongoTemplate.getCollectionName(Product.class))) {
+        cursor.forEachRemaining(products::add);
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to rebuild the product name index", e);
+      return;
+    }
+
+    Index rebuilt = Index.of(products);
+    synchronized (this) {
+      for (UnaryOperator<Index> change : pendingChanges)
+        rebuilt = change.apply(rebuilt);
+      index = rebuilt;
+    }
+
+    log.info("Rebuilt the product name index with {} products", rebuilt.size());
+  }
+
+  /**
+   * Applies a change to the index in use and records it for the running
+   * rebuild, if any.
+   * 
+   * @param change the function creating the changed index.
+   */
+  private synchronized void apply(UnaryOperator<Index> change) {
+    index = change.apply(index);
+    if (pendingChanges != null)
+      pendingChanges.add(change);
+  }
+
+  /**
+   * Ends the running rebuild, or starts the next one if it was requested
+   * meanwhile.
+   * 
+   * @return {@code true} if the index must be rebuilt again.
+   */
+  private synchronized boolean continueRebuild() {
+    if (!rebuildRequested) {
+      pendingChanges = null;
+      return false;
+    }
+
+    rebuildRequested = false;
+    pendingChanges = new ArrayList<>();
+    return true;
+  }
+
+  /**
+   * Normalizes a name or prefix for case-insensitive matching.
+   * 
+   * @param name the name or prefix.
+   * @return the lower-case, trimmed form.
+   */
+  private static String normalize(String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * An immutable snapshot of the index: the normalized names and the products
+   * in the same order, sorted by normalized name and ID.
+   */
+  private static final class Index {
+    static final Index EMPTY = new Index(new String[0], new ProductSuggestion[0]);
+
+    private static final Comparator<ProductSuggestion> ORDER = Comparator
+        .comparing((ProductSuggestion product) -> normalize(product.getName()))
+        .thenComparing(ProductSuggestion::getId);
+
+    private final String[] names;
+    private final ProductSuggestion[] products;
+
+    private Index(String[] names, ProductSuggestion[] products) {
+      this.names = names;
+      this.products = products;
+    }
+
+    /**
+     * Creates an index of the given products, one per ID.
+     * 
+     * @param products the {@link ProductSuggestion} objects to index.
+     * @return the {@link Index} of the products.
+     */
+    static Index of(List<ProductSuggestion> products) {
+      Map<ObjectId, ProductSuggestion> latest = new HashMap<>();
+      products.forEach(product -> latest.put(product.getId(), product));
+      ProductSuggestion[] sorted = latest.values().toArray(new ProductSuggestion[0]);
+      Arrays.sort(sorted, ORDER);
+      String[] names = new String[sorted.length];
+      for (int position = 0; position < sorted.length; position++)
+        names[position] = normalize(sorted[position].getName());
+      return new Index(names, sorted);
+    }
+
+    /**
+     * Creates a copy of the index without the products with the given IDs and
+     * with the given products added.
+     * 
+     * @param added      the {@link ProductSuggestion} objects to add.
+     * @param removedIds the IDs of the products to remove, including the IDs
+     *                   of the added products.
+     * @return the changed {@link Index}.
+     */
+    Index with(List<ProductSuggestion> added, Set<ObjectId> removedIds) {
+      ProductSuggestion[] sortedAdded = added.toArray(new ProductSuggestion[0]);
+      Arrays.sort(sortedAdded, ORDER);
+      String[] mergedNames = new String[products.length + sortedAdded.length];
+      ProductSuggestion[] merged = new ProductSuggestion[mergedNames.length];
+      int size = 0;
+      int next = 0;
+      for (int position = 0; position < products.length; position++) {
+        if (removedIds.contains(products[position].getId()))
+          continue;
+
+        while (next < sortedAdded.length && ORDER.compare(sortedAdded[next], products[position]) < 0) {
+          mergedNames[size] = normalize(sortedAdded[next].getName());
+          merged[size++] = sortedAdded[next++];
+        }
+
+        mergedNames[size] = names[position];
+        merged[size++] = products[position];
+      }
+
+      while (next < sortedAdded.length) {
+        mergedNames[size] = normalize(sortedAdded[next].getName());
+        merged[size++] = sortedAdded[next++];
+      }
+
+      return new Index(Arrays.copyOf(mergedNames, size), Arrays.copyOf(merged, size));
+    }
+
+    /**
+     * Finds the products whose normalized names start with a prefix.
+     * 
+     * @param prefix the normalized prefix.
+     * @param limit  the maximum number of products.
+     * @return a {@link List} of {@link ProductSuggestion} objects in name order.
+     */
+    List<ProductSuggestion> find(String prefix, int limit) {
+      int low = 0;
+      int high = names.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (names[middle].compareTo(prefix) < 0)
+          low = middle + 1;
+        else
+          high = middle;
+      }
+
+      List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+      for (int position = low; position < names.length && suggestions.size() < limit
+          && names[position].startsWith(prefix); position++)
+        suggestions.add(products[position]);
+      return suggestions;
+    }
+
+    int size() {
+      return products.length;
+    }
+  }
+}
@@ -0,0 +1,455 @@
+package com.drevotiuk.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory replica of the "products" collection for the public read path.
+ * <p>
+ * When enabled, the replica is loaded at startup and kept current by a
+ * change stream followed on a dedicated thread. The change stream is opened
+ * before the collection is loaded, so changes made during the load are
+ * applied afterwards. The resume token of the last seen change is kept, so
+ * that an interrupted change stream resumes where it stopped, while the
+ * replica keeps serving reads; if the token is no longer in the oplog, the
+ * collection is loaded again. Change streams require a replica set.
+ * </p>
+ * <p>
+ * The change stream only carries the fields of a {@link ProductView}. A
+ * change that cannot be applied makes the replica stop serving reads until
+ * the collection is loaded again, while a product that cannot be stored is
+ * logged and left out of the replica, which keeps following the stream; the
+ * replication lag is published as the {@code product.replica.lag} gauge.
+ * </p>
+ * <p>
+ * If {@link CatalogSnapshot snapshots} are enabled, the replica is written to
+ * local disk periodically and on shutdown. At startup it is restored from the
+ * snapshot and serves reads at once, while the change stream resumes after
+ * the stored resume token to catch up with Mongo.
+ * </p>
+ * <p>
+ * Products are held by a {@link HeapCatalogStore}, or by a
+ * {@link ColumnarCatalogStore} outside of the heap if the columnar store is
+ * enabled. Until the replica is loaded, or if it is disabled,
+ * {@link #isReady()} returns {@code false} and reads go to the database.
+ * </p>
+ */
+@Component
+@Slf4j
+public class ProductReplica implements MeterBinder {
+  /** The server error codes of a change stream that cannot be resumed. */
+  private static final List<Integer> NON_RESUMABLE_ERRORS = List.of(280, 286);
+
+  private static final int LOAD_BATCH_SIZE = 1000;
+  private static final long MAX_AWAIT_MILLIS = 1000;
+
+  private final MongoTemplate mongoTemplate;
+  private final CatalogSnapshot snapshot;
+  private final boolean enabled;
+  private final Duration reconnectDelay;
+  private final Supplier<CatalogStore> storeFactory;
+
+  private volatile CatalogStore store;
+  private volatile boolean ready;
+  private volatile boolean running;
+  private volatile BsonDocument resumeToken;
+  /** The time in milliseconds up to which all changes were applied. */
+  private volatile long syncedAt;
+  private Thread replicator;
+
+  /**
+   * Creates a {@link ProductReplica}.
+   * 
+   * @param mongoTemplate  the {@link MongoTemplate} used to load and follow the
+   *                       collection.
+   * @param snapshot       the {@link CatalogSnapshot} the replica is restored
+   *                       from and saved to.
+   * @param enabled        whether reads are served from the replica.
+   * @param reconnectDelay the time to wait before reopening a failed change
+   *                       stream.
+   * @param columnar       whether products are held by a
+   *                       {@link ColumnarCatalogStore} instead of a
+   *                       {@link HeapCatalogStore}.
+   */
+  public ProductReplica(MongoTemplate mongoTemplate, CatalogSnapshot snapshot,
+      @Value("${product.replica.enabled}") boolean enabled,
+      @Value("${product.replica.reconnect-delay}") Duration reconnectDelay,
+      @Value("${product.replica.columnar}") boolean columnar) {
+    this.mongoTemplate = mongoTemplate;
+    this.snapshot = snapshot;
+    this.enabled = enabled;
+    this.reconnectDelay = reconnectDelay;
+    this.storeFactory = columnar ? ColumnarCatalogStore::new : HeapCatalogStore::new;
+    this.store = storeFactory.get();
+  }
+
+  /**
+   * Starts replicating the collection if the replica is enabled.
+   */
+  @PostConstruct
+  public void start() {
+    if (!enabled)
+      return;
+
+    running = true;
+    replicator = new Thread(this::replicate, "product-replica");
+    replicator.setDaemon(true);
+    replicator.start();
+  }
+
+  /**
+   * Saves a snapshot of the replica and stops replicating the collection.
+   */
+  @PreDestroy
+  public void stop() {
+    saveSnapshot();
+    running = false;
+    if (replicator != null)
+      replicator.interrupt();
+  }
+
+  /**
+   * Saves a snapshot of the replica if snapshots are enabled and the replica
+   * is ready.
+   * <p>
+   * The resume token is read before the products, so that changes applied
+   * while the snapshot is written are applied again after a restore.
+   * </p>
+   */
+  @Scheduled(initialDelayString = "${product.replica.snapshot.interval}",
+      fixedDelayString = "${product.replica.snapshot.interval}")
+  public void saveSnapshot() {
+    BsonDocument token = resumeToken;
+    if (!snapshot.isEnabled() || !ready || token == null)
+      return;
+
+    snapshot.write(token, store);
+  }
+
+  /**
+   * Returns whether the replica is loaded and serves reads.
+   * 
+   * @return {@code true} if reads can be served from the replica.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Retrieves a product from the replica.
+   * 
+   * @param productId the ID of the product.
+   * @return an {@link Optional} containing the {@link ProductView}, or empty
+   *         if the product does not exist.
+   */
+  public Optional<ProductView> find(ObjectId productId) {
+    return store.find(productId);
+  }
+
+  /**
+   * Retrieves several products from the replica.
+   * 
+   * @param productIds the IDs of the products.
+   * @return a {@link Map} of product IDs to products, without entries for
+   *         products that do not exist.
+   */
+  public Map<ObjectId, ProductView> findAll(Collection<ObjectId> productIds) {
+    Map<ObjectId, ProductView> found = new HashMap<>();
+    productIds.forEach(productId -> find(productId).ifPresent(product -> found.put(productId, product)));
+    return found;
+  }
+
+  /**
+   * Retrieves products matching a filter with IDs greater than the given one,
+   * in ascending ID order.
+   * 
+   * @param filter the {@link ProductFilter} the products must match; its sort
+   *               is ignored.
+   * @param after  the ID after which products are retrieved.
+   * @param count  the maximum number of products.
+   * @return a {@link List} of matching {@link ProductView} objects.
+   */
+  public List<ProductView> findAfter(ProductFilter filter, ObjectId after, int count) {
+    return store.findAfter(filter, after, count);
+  }
+
+  /**
+   * Binds the size and the lag of the replica to the given registry.
+   * <p>
+   * The lag is the time since the replica was last known to be current: the
+   * cluster time of the last applied change, or the time the change stream
+   * was last found to have no further changes. It is {@code NaN} until the
+   * replica follows the change stream.
+   * </p>
+   * 
+   * @param registry the {@link MeterRegistry} to bind the replica metrics to.
+   */
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("product.replica.size", this, replica -> replica.store.size())
+        .description("Products held by the in-memory replica")
+        .register(registry);
+    Gauge.builder("product.replica.lag", this, ProductReplica::getLagSeconds)
+        .description("Time since the in-memory replica was last known to be current")
+        .baseUnit("seconds")
+        .register(registry);
+  }
+
+  /**
+   * Applies a change of a single product to the replica.
+   * 
+   * @param operationType the type of the change.
+   * @param productId     the ID of the changed product.
+   * @param document      the current document of the product, or
+   *                      {@code null} if it no longer exists.
+   */
+  void apply(OperationType operationType, ObjectId productId, Document document) {
+    switch (operationType) {
+      case INSERT:
+      case UPDATE:
+      case REPLACE:
+        if (document == null)
+          store.remove(productId);
+        else
+          put(store, mongoTemplate.getConverter().read(ProductView.class, document));
+        break;
+      case DELETE:
+        store.remove(productId);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Applies a change of the change stream to the replica.
+   * 
+   * @param change the {@link ChangeStreamDocument} of the change.
+   * @return {@code true} if the change was applied, {@code false} if the
+   *         collection must be loaded again.
+   */
+  boolean applyChange(ChangeStreamDocument<Document> change) {
+    OperationType operationType = change.getOperationType();
+    if (operationType == OperationType.INVALIDATE || operationType == OperationType.DROP
+        || operationType == OperationType.RENAME || operationType == OperationType.DROP_DATABASE) {
+      log.warn("Products collection was {}, reloading the replica", operationType.getValue());
+      return false;
+    }
+
+    ObjectId productId = change.getDocumentKey().getObjectId("_id").getValue();
+    try {
+      apply(operationType, productId, change.getFullDocument());
+    } catch (RuntimeException e) {
+      log.error("Cannot apply a change of product {}, reloading the replica", productId, e);
+      ready = false;
+      return false;
+    }
+
+    BsonTimestamp clusterTime = change.getClusterTime();
+    if (clusterTime != null)
+      syncedAt = clusterTime.getTime() * 1000L;
+    return true;
+  }
+
+  /**
+   * Returns the replication lag.
+   * 
+   * @return the time in seconds since the replica was last known to be
+   *         current, or {@code NaN} if it does not follow the change stream.
+   */
+  double getLagSeconds() {
+    long synced = syncedAt;
+    return synced == 0 ? Double.NaN : (System.currentTimeMillis() - synced) / 1000.0;
+  }
+
+  /**
+   * Loads the collection and follows its change stream until stopped.
+   * <p>
+   * Reads are served from the database again once replication ends, whatever
+   * the reason.
+   * </p>
+   */
+  private void replicate() {
+    try {
+      restore();
+      while (running) {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watch(resumeToken)) {
+          if (resumeToken == null)
+            load(cursor.getResumeToken());
+          else
+            log.info("Resumed the product change stream");
+
+          follow(cursor);
+        } catch (MongoCommandException e) {
+          if (NON_RESUMABLE_ERRORS.contains(e.getErrorCode())) {
+            log.warn("Cannot resume the product change stream, reloading the replica", e);
+            resumeToken = null;
+          } else {
+            log.warn("Product change stream failed", e);
+          }
+
+          pause();
+        } catch (MongoException e) {
+          if (running)
+            log.warn("Product change stream failed", e);
+
+          pause();
+        } catch (RuntimeException e) {
+          log.error("Product replication failed, serving products from the database", e);
+          running = false;
+        }
+      }
+    } finally {
+      ready = false;
+      syncedAt = 0;
+    }
+  }
+
+  /**
+   * Restores the replica from the snapshot, if one can be loaded.
+   */
+  private void restore() {
+    CatalogStore restored = storeFactory.get();
+    snapshot.read(restored).ifPresent(token -> {
+      store = restored;
+      resumeToken = token;
+      ready = true;
+    });
+  }
+
+  /**
+   * Opens the change stream of the collection, projected to the fields of a
+   * {@link ProductView}.
+   * 
+   * @param resumeAfter the resume token to resume after, or {@code null} to
+   *                    start at the current time.
+   * @return the {@link MongoChangeStreamCursor} of the change stream.
+   */
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> watch(BsonDocument resumeAfter) {
+    ChangeStreamIterable<Document> changeStream = mongoTemplate.getCollection(
+        mongoTemplate.getCollectionName(Product.class))
+        .watch(List.of(Aggregates.project(Projections.include("operationType", "documentKey", "clusterTime",
+            "fullDocument._id", "fullDocument.name", "fullDocument.category", "fullDocument.price",
+            "fullDocument.qty"))))
+        .fullDocument(FullDocument.UPDATE_LOOKUP)
+        .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    if (resumeAfter != null)
+      changeStream = changeStream.resumeAfter(resumeAfter);
+    return changeStream.cursor();
+  }
+
+  /**
+   * Loads all products in ID order into a new store and replaces the current
+   * one.
+   * 
+   * @param startToken the resume token of the change stream opened before the
+   *                   load.
+   */
+  private void load(BsonDocument startToken) {
+    CatalogStore loaded = storeFactory.get();
+    Query query = new Query().with(Sort.by("id")).cursorBatchSize(LOAD_BATCH_SIZE);
+    query.fields().include("name", "category", "price", "qty");
+    try (CloseableIterator<ProductView> cursor = mongoTemplate.stream(query, ProductView.class,
+        mongoTemplate.getCollectionName(Product.class))) {
+      cursor.forEachRemaining(product -> put(loaded, product));
+    }
+
+    store = loaded;
+    resumeToken = startToken;
+    ready = true;
+    log.info("Loaded {} products into the replica", loaded.size());
+  }
+
+  /**
+   * Stores a product, or removes it from the store if it cannot be stored.
+   * <p>
+   * A product that cannot be stored is left out of the replica until a later
+   * change makes it storable, rather than served with outdated values.
+   * </p>
+   * 
+   * @param target  the {@link CatalogStore} to store the product in.
+   * @param product the {@link ProductView} to store.
+   */
+  private void put(CatalogStore target, ProductView product) {
+    try {
+      target.put(product);
+    } catch (IllegalArgumentException e) {
+      log.error("Cannot store product {}, leaving it out of the replica", product.getId(), e);
+      target.remove(product.getId());
+    }
+  }
+
+  /**
+   * Applies the changes of the change stream until stopped, the stream
+   * becomes invalid or a change cannot be applied.
+   * 
+   * @param cursor the {@link MongoChangeStreamCursor} of the change stream.
+   */
+  private void follow(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+    while (running) {
+      ChangeStreamDocument<Document> change = cursor.tryNext();
+      if (change == null) {
+        syncedAt = System.currentTimeMillis();
+      } else if (!applyChange(change)) {
+        resumeToken = null;
+        return;
+      }
+
+      BsonDocument token = cursor.getResumeToken();
+      if (token != null)
+        resumeToken = token;
+    }
+  }
+
+  /**
+   * Waits before the change stream is reopened.
+   */
+  private void pause() {
+    try {
+      Thread.sleep(reconnectDelay.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+}
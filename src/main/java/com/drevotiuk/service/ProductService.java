@@ -1,30 +1,47 @@
 package com.drevotiuk.service;
 
 import com.drevotiuk.model.exception.ProductNotFoundException;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
 import com.drevotiuk.model.exception.InvalidQuantityException;
+import com.drevotiuk.model.CartLinePrice;
+import com.drevotiuk.model.CartPrice;
 import com.drevotiuk.model.OrderItem;
 import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSort;
+import com.drevotiuk.model.ProductSuggestion;
 import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.StockVerdict;
 import com.drevotiuk.repository.ProductRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.bson.types.ObjectId;
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.annotation.Timed;
+
 /**
  * Service class for handling product-related business logic.
  * <p>
  * This service manages product retrieval and processing, including interaction
  * with the product repository and message consumption for calculating total
- * prices.
+ * prices of single items and whole carts.
  * </p>
  */
 @Service
@@ -33,22 +50,82 @@ import org.springframework.stereotype.Service;
 public class ProductService {
   private final ProductRepository repository;
   private final ProductServiceUtils serviceUtils;
+  private final MongoTemplate mongoTemplate;
+  private final ProductCache productCache;
+  private final ProductNameIndex nameIndex;
+  private final ProductReplica replica;
+  private final ProductMetrics metrics;
+
+  /**
+   * Retrieves a page of products matching a filter in the requested order.
+   * <p>
+   * Pages in ID order are served from the {@link ProductReplica} once it is
+   * ready; otherwise filtering, sorting and pagination are executed by the
+   * database. Logs the number of products fetched.
+   * </p>
+   * 
+   * @param filter the {@link ProductFilter} the products must match.
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link ProductPage} containing the products of the page and the
+   *         cursor of the next one.
+   * @throws InvalidPageRequestException if the filter, cursor or limit is
+   *                                     invalid.
+   */
+  public ProductPage findAll(ProductFilter filter, String cursor, int limit) {
+    List<ProductView> products;
+    if (filter.getSort() == ProductSort.ID && replica.isReady()) {
+      serviceUtils.validatePageRequest(filter, limit);
+      products = replica.findAfter(filter, serviceUtils.decodeCursor(cursor), limit + 1);
+    } else {
+      Query query = serviceUtils.createPageQuery(filter, cursor, limit);
+      products = mongoTemplate.find(query, ProductView.class, mongoTemplate.getCollectionName(Product.class));
+    }
+
+    ProductPage page = serviceUtils.createPage(products, limit, filter.getSort());
+    log.info("Fetched {} products matching {}", page.getItems().size(), filter);
+    return page;
+  }
+
+  /**
+   * Searches products by name and returns a page of them ranked by relevance.
+   * <p>
+   * Matching is done by the text index on the product name. Logs the number
+   * of products found.
+   * </p>
+   * 
+   * @param text   the text to search for.
+   * @param cursor the cursor returned with the previous page of results, or
+   *               {@code null} for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link ProductPage} containing the products of the page and the
+   *         cursor of the next one.
+   * @throws InvalidPageRequestException if the text, cursor or limit is
+   *                                     invalid.
+   */
+  public ProductPage search(String text, String cursor, int limit) {
+    Query query = serviceUtils.createSearchQuery(text, cursor, limit);
+    List<ProductView> products = mongoTemplate.find(query, ProductView.class,
+        mongoTemplate.getCollectionName(Product.class));
+    ProductPage page = serviceUtils.createSearchPage(products, cursor, limit);
+    log.info("Found {} products matching '{}'", page.getItems().size(), text);
+    return page;
+  }
 
   /**
-   * Retrieves all products and maps them to {@link ProductView} objects.
+   * Suggests products whose names start with a prefix, ignoring case.
    * <p>
-   * Logs the number of products fetched.
+   * Suggestions are served from the in-memory {@link ProductNameIndex}.
    * </p>
    * 
-   * @return a {@link List} of {@link ProductView} objects representing all
-   *         products.
+   * @param prefix the prefix typed so far.
+   * @param limit  the maximum number of suggestions.
+   * @return a {@link List} of {@link ProductSuggestion} objects in name order.
+   * @throws InvalidPageRequestException if the limit is invalid.
    */
-  public List<ProductView> findAll() {
-    List<ProductView> products = repository.findAll().stream()
-        .map(ProductView::new)
-        .collect(Collectors.toList());
-    log.info("Fetched {} products", products.size());
-    return products;
+  public List<ProductSuggestion> suggest(String prefix, int limit) {
+    return nameIndex.suggest(prefix, limit);
   }
 
   /**
@@ -65,7 +142,7 @@ public class ProductService {
    */
   public ProductView find(ObjectId productId) {
     log.info("Fetching product with ID {}", productId);
-    return new ProductView(findById(productId));
+    return findById(productId);
   }
 
   /**
@@ -81,18 +158,25 @@ public class ProductService {
    * @return the total price if successful, or {@code null} if an error occurs.
    * @throws AmqpRejectAndDontRequeueException if unexpected error happened
    */
-  @RabbitListener(queues = { "${rabbitmq.queue.total-price}" })
+  @RabbitListener(id = "total-price", queues = { "${rabbitmq.queue.total-price}" },
+      containerFactory = "totalPriceContainerFactory")
+  @Timed(value = "product.listener", extraTags = { "listener", "total-price" })
   public BigDecimal consumeAndProduceTotalPrice(OrderItem item) {
     try {
       log.info("Received message for calculating total price: {}", item);
       ObjectId productId = new ObjectId(item.getProductId());
-      Product product = findById(productId);
+      ProductView product = findById(productId);
 
       if (product.getQty() < item.getQty())
         throw createInvalidQuantityException(productId, product.getQty(), item.getQty());
 
+      metrics.recordPricing(StockVerdict.IN_STOCK);
       return product.getPrice().multiply(BigDecimal.valueOf(item.getQty()));
-    } catch (ProductNotFoundException | InvalidQuantityException e) {
+    } catch (ProductNotFoundException e) {
+      metrics.recordPricing(StockVerdict.NOT_FOUND);
+      log.warn("Invalid product or quantity");
+    } catch (InvalidQuantityException e) {
+      metrics.recordPricing(StockVerdict.INSUFFICIENT_QUANTITY);
       log.warn("Invalid product or quantity");
     } catch (Exception e) {
       log.warn("Unexcepted error happened while calculating total price");
@@ -103,20 +187,110 @@ public class ProductService {
   }
 
   /**
-   * Retrieves a {@link Product} by its ID.
+   * Consumes messages from the batch total price queue to price a whole cart in
+   * one request.
+   * <p>
+   * All products of the cart are loaded with a single lookup. Lines of the same
+   * product are checked against its stock together, so that their verdicts
+   * agree with the reservation of the whole order. Logs details of the received
+   * message and any exceptions encountered during processing.
+   * </p>
+   * 
+   * @param items a {@link List} of {@link OrderItem} objects containing product
+   *              IDs and quantities of the cart.
+   * @return a {@link CartPrice} with per-line totals and stock verdicts and the
+   *         grand total.
+   * @throws AmqpRejectAndDontRequeueException if unexpected error happened
+   */
+  @RabbitListener(id = "total-price-batch", queues = { "${rabbitmq.queue.total-price-batch}" },
+      containerFactory = "totalPriceContainerFactory")
+  @Timed(value = "product.listener", extraTags = { "listener", "total-price-batch" })
+  public CartPrice consumeAndProduceCartPrice(List<OrderItem> items) {
+    try {
+      log.info("Received message for calculating cart price of {} items", items.size());
+      Set<ObjectId> productIds = items.stream()
+          .map(OrderItem::getProductId)
+          .filter(productId -> productId != null && ObjectId.isValid(productId))
+          .map(ObjectId::new)
+          .collect(Collectors.toSet());
+      Map<ObjectId, ProductView> products = replica.isReady()
+          ? replica.findAll(productIds)
+          : productCache.getAll(productIds, repository::findViewsByIdIn);
+
+      Map<String, Integer> quantities = mergeQuantities(items);
+      List<CartLinePrice> lines = items.stream()
+          .map(item -> createCartLinePrice(item, quantities.get(item.getProductId()), products))
+          .collect(Collectors.toList());
+      lines.forEach(line -> metrics.recordPricing(line.getVerdict()));
+      BigDecimal total = lines.stream()
+          .map(CartLinePrice::getTotal)
+          .filter(Objects::nonNull)
+          .reduce(BigDecimal.ZERO, BigDecimal::add);
+      boolean available = lines.stream().allMatch(line -> line.getVerdict() == StockVerdict.IN_STOCK);
+      return new CartPrice(lines, total, available);
+    } catch (Exception e) {
+      log.warn("Unexcepted error happened while calculating cart price");
+      throw new AmqpRejectAndDontRequeueException(e);
+    }
+  }
+
+  /**
+   * Retrieves the {@link ProductView} of a product by its ID from the
+   * {@link ProductReplica} once it is ready, or otherwise through the
+   * {@link ProductCache}.
    * <p>
    * Throws a {@link ProductNotFoundException} if the product with the given ID
    * does not exist.
    * </p>
    * 
    * @param productId the ID of the product to retrieve, must not be {@code null}.
-   * @return the {@link Product} object with the given ID.
+   * @return the {@link ProductView} object of the product with the given ID.
    * @throws ProductNotFoundException if the product with the given ID does not
    *                                  exist.
    */
-  private Product findById(ObjectId productId) {
-    return repository.findById(productId)
-        .orElseThrow(() -> serviceUtils.createProductNotFoundException(productId));
+  private ProductView findById(ObjectId productId) {
+    Optional<ProductView> product = replica.isReady()
+        ? replica.find(productId)
+        : productCache.get(productId, repository::findViewById);
+    return product.orElseThrow(() -> serviceUtils.createProductNotFoundException(productId));
+  }
+
+  /**
+   * Prices a single cart line using the already loaded products.
+   * <p>
+   * The stock verdict is based on the quantity requested by all lines of the
+   * product, while the line total is based on the quantity of the line only.
+   * </p>
+   * 
+   * @param item        the {@link OrderItem} of the cart line.
+   * @param requiredQty the total quantity of the product in the cart.
+   * @param products    a {@link Map} of product IDs to loaded products.
+   * @return a {@link CartLinePrice} with the line total and stock verdict.
+   */
+  private CartLinePrice createCartLinePrice(OrderItem item, int requiredQty, Map<ObjectId, ProductView> products) {
+    String productId = item.getProductId();
+    ProductView product = productId != null && ObjectId.isValid(productId)
+        ? products.get(new ObjectId(productId))
+        : null;
+    if (product == null)
+      return new CartLinePrice(productId, item.getQty(), null, null, StockVerdict.NOT_FOUND);
+
+    StockVerdict verdict = product.getQty() < requiredQty
+        ? StockVerdict.INSUFFICIENT_QUANTITY
+        : StockVerdict.IN_STOCK;
+    BigDecimal total = product.getPrice().multiply(BigDecimal.valueOf(item.getQty()));
+    return new CartLinePrice(productId, item.getQty(), product.getPrice(), total, verdict);
+  }
+
+  /**
+   * Merges cart lines referring to the same product, preserving their order.
+   * 
+   * @param items a {@link List} of {@link OrderItem} objects.
+   * @return a {@link Map} of product IDs to total quantities.
+   */
+  private Map<String, Integer> mergeQuantities(List<OrderItem> items) {
+    return items.stream()
+        .collect(Collectors.toMap(OrderItem::getProductId, OrderItem::getQty, Integer::sum, LinkedHashMap::new));
   }
 
   /**
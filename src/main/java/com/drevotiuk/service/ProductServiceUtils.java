@@ -1,8 +1,27 @@
 package com.drevotiuk.service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
 import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.stereotype.Service;
 
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSort;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
 import com.drevotiuk.model.exception.ProductNotFoundException;
 
 import lombok.RequiredArgsConstructor;
@@ -11,13 +30,26 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Utility class for product-related operations.
  * <p>
- * Provides helper methods for product retrieval and exception creation.
+ * Provides helper methods for product retrieval, filtering, pagination and
+ * exception creation.
  * </p>
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductServiceUtils {
+  /** The maximum number of products that can be requested in a single page. */
+  public static final int MAX_PAGE_LIMIT = 100;
+
+  /** The maximum number of search results that can be paged through. */
+  public static final int MAX_SEARCH_RESULTS = 1000;
+
+  /** The number of bytes of an {@link ObjectId}. */
+  private static final int ID_LENGTH = 12;
+
+  /** The smallest possible {@link ObjectId}, used as a cursor of the first page. */
+  private static final ObjectId FIRST_PAGE_CURSOR = new ObjectId(new byte[ID_LENGTH]);
+
   /**
    * Creates a {@link ProductNotFoundException} with a detailed message about the
    * missing product.
@@ -33,4 +65,321 @@ public class ProductServiceUtils {
     log.warn("Product not found with ID: {}", productId);
     return new ProductNotFoundException("Product not found with ID: " + productId);
   }
+
+  /**
+   * Decodes an opaque page cursor into the ID of the last product of the
+   * previous page.
+   * 
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @return the {@link ObjectId} after which the requested page starts.
+   * @throws InvalidPageRequestException if the cursor is malformed.
+   */
+  public ObjectId decodeCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty())
+      return FIRST_PAGE_CURSOR;
+
+    try {
+      return new ObjectId(Base64.getUrlDecoder().decode(cursor));
+    } catch (IllegalArgumentException e) {
+      log.warn("Invalid page cursor: {}", cursor);
+      throw new InvalidPageRequestException("Invalid page cursor: " + cursor, e);
+    }
+  }
+
+  /**
+   * Encodes the ID of the last product of a page into an opaque page cursor.
+   * 
+   * @param productId the ID of the last product of the page.
+   * @return the cursor of the next page.
+   */
+  public String encodeCursor(ObjectId productId) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(productId.toByteArray());
+  }
+
+  /**
+   * Creates a {@link Pageable} that fetches one product more than requested in
+   * ascending ID order, so that the presence of a next page can be detected
+   * without a count query.
+   * 
+   * @param limit the maximum number of products in the page.
+   * @return a {@link Pageable} for the keyset query.
+   * @throws InvalidPageRequestException if the limit is out of the allowed range.
+   */
+  public Pageable createPageRequest(int limit) {
+    validateLimit(limit);
+    return PageRequest.of(0, limit + 1, Sort.by("id"));
+  }
+
+  /**
+   * Creates a keyset query for a page of products matching a filter.
+   * <p>
+   * The query starts after the position encoded in the cursor, sorts by the
+   * requested property and then by ID if the property is not unique, and
+   * fetches one product more than requested. Only the fields of
+   * {@link ProductView} are read.
+   * </p>
+   * 
+   * @param filter the {@link ProductFilter} the products must match.
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link Query} for the page.
+   * @throws InvalidPageRequestException if the filter, cursor or limit is
+   *                                     invalid.
+   */
+  public Query createPageQuery(ProductFilter filter, String cursor, int limit) {
+    validatePageRequest(filter, limit);
+    List<Criteria> criteria = new ArrayList<>();
+    if (filter.getCategory() != null)
+      criteria.add(Criteria.where("category").is(filter.getCategory()));
+    if (filter.getMinPrice() != null)
+      criteria.add(Criteria.where("price").gte(filter.getMinPrice()));
+    if (filter.getMaxPrice() != null)
+      criteria.add(Criteria.where("price").lte(filter.getMaxPrice()));
+    if (filter.isInStock())
+      criteria.add(Criteria.where("qty").gt(0));
+    if (cursor != null && !cursor.isEmpty())
+      criteria.add(createKeysetCriteria(filter.getSort(), cursor));
+
+    ProductSort sort = filter.getSort();
+    Query query = new Query()
+        .with(sort.isUnique() ? Sort.by(sort.getProperty()) : Sort.by(sort.getProperty(), "id"))
+        .limit(limit + 1);
+    if (!criteria.isEmpty())
+      query.addCriteria(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+    query.fields().include("name", "category", "price", "qty");
+    return query;
+  }
+
+  /**
+   * Checks that the filter and limit of a page request are valid.
+   * 
+   * @param filter the {@link ProductFilter} the products must match.
+   * @param limit  the maximum number of products in the page.
+   * @throws InvalidPageRequestException if the price range or limit is
+   *                                     invalid.
+   */
+  public void validatePageRequest(ProductFilter filter, int limit) {
+    validateLimit(limit);
+    if (filter.getMinPrice() != null && filter.getMaxPrice() != null
+        && filter.getMinPrice().compareTo(filter.getMaxPrice()) > 0) {
+      log.warn("Invalid price range: {} - {}", filter.getMinPrice(), filter.getMaxPrice());
+      throw new InvalidPageRequestException(String.format("Minimum price %s exceeds maximum price %s",
+          filter.getMinPrice(), filter.getMaxPrice()));
+    }
+  }
+
+  /**
+   * Creates a query for a page of products whose names match a text search,
+   * ranked by relevance.
+   * <p>
+   * The query is served by the text index on the product name and fetches one
+   * product more than requested. Only the fields of {@link ProductView} and the
+   * text score are read.
+   * </p>
+   * 
+   * @param text   the text to search for.
+   * @param cursor the cursor returned with the previous page of results, or
+   *               {@code null} for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link Query} for the page.
+   * @throws InvalidPageRequestException if the text, cursor or limit is
+   *                                     invalid.
+   */
+  public Query createSearchQuery(String text, String cursor, int limit) {
+    validateLimit(limit);
+    if (text == null || text.isBlank()) {
+      log.warn("Blank search text");
+      throw new InvalidPageRequestException("Search text must not be blank");
+    }
+
+    Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text))
+        .sortByScore()
+        .skip(decodeSearchCursor(cursor))
+        .limit(limit + 1);
+    query.fields().include("name", "category", "price", "qty");
+    return query;
+  }
+
+  /**
+   * Builds a {@link ProductPage} out of products fetched with a query created
+   * by {@link #createSearchQuery(String, String, int)}.
+   * <p>
+   * No next page is returned beyond {@value #MAX_SEARCH_RESULTS} results, as
+   * paging through the results of a text search skips the previous ones.
+   * </p>
+   * 
+   * @param products the views of the products fetched in relevance order, at
+   *                 most {@code limit + 1}.
+   * @param cursor   the cursor the products were fetched with.
+   * @param limit    the maximum number of products in the page.
+   * @return a {@link ProductPage} with the next cursor set if more results
+   *         exist.
+   */
+  public ProductPage createSearchPage(List<ProductView> products, String cursor, int limit) {
+    int offset = decodeSearchCursor(cursor) + limit;
+    boolean hasNext = products.size() > limit && offset < MAX_SEARCH_RESULTS;
+    List<ProductView> items = products.size() > limit ? new ArrayList<>(products.subList(0, limit)) : products;
+    String next = hasNext ? encodeSearchCursor(offset) : null;
+    return new ProductPage(items, next);
+  }
+
+  /**
+   * Builds a {@link ProductPage} out of products fetched with a page request
+   * created by {@link #createPageRequest(int)}.
+   * 
+   * @param products the views of the products fetched in ascending ID order,
+   *                 at most {@code limit + 1}.
+   * @param limit    the maximum number of products in the page.
+   * @return a {@link ProductPage} with the next cursor set if more products
+   *         exist.
+   */
+  public ProductPage createPage(List<ProductView> products, int limit) {
+    return createPage(products, limit, ProductSort.ID);
+  }
+
+  /**
+   * Builds a {@link ProductPage} out of products fetched with a query created
+   * by {@link #createPageQuery(ProductFilter, String, int)}.
+   * 
+   * @param products the views of the products fetched in the given order, at
+   *                 most {@code limit + 1}.
+   * @param limit    the maximum number of products in the page.
+   * @param sort     the {@link ProductSort} the products were fetched in.
+   * @return a {@link ProductPage} with the next cursor set if more products
+   *         exist.
+   */
+  public ProductPage createPage(List<ProductView> products, int limit, ProductSort sort) {
+    boolean hasNext = products.size() > limit;
+    List<ProductView> items = hasNext ? new ArrayList<>(products.subList(0, limit)) : products;
+    String next = hasNext ? encodeCursor(items.get(limit - 1), sort) : null;
+    return new ProductPage(items, next);
+  }
+
+  /**
+   * Checks that a page limit is within the allowed range.
+   * 
+   * @param limit the maximum number of products in the page.
+   * @throws InvalidPageRequestException if the limit is out of the allowed range.
+   */
+  private void validateLimit(int limit) {
+    if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+      log.warn("Invalid page limit: {}", limit);
+      throw new InvalidPageRequestException(
+          String.format("Page limit must be between 1 and %d; got: %d", MAX_PAGE_LIMIT, limit));
+    }
+  }
+
+  /**
+   * Encodes the position of the last product of a page into an opaque page
+   * cursor.
+   * <p>
+   * The cursor holds the bytes of the product ID, followed by the value of the
+   * sorted property unless products are sorted by ID, so that cursors of pages
+   * in ID order are the same as those of {@link #encodeCursor(ObjectId)}.
+   * </p>
+   * 
+   * @param product the last product of the page.
+   * @param sort    the {@link ProductSort} of the page.
+   * @return the cursor of the next page.
+   */
+  private String encodeCursor(ProductView product, ProductSort sort) {
+    String value = getSortValue(product, sort);
+    if (value == null)
+      return encodeCursor(product.getId());
+
+    byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = Arrays.copyOf(product.getId().toByteArray(), ID_LENGTH + valueBytes.length);
+    System.arraycopy(valueBytes, 0, bytes, ID_LENGTH, valueBytes.length);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  /**
+   * Decodes an opaque search cursor into the number of results to skip.
+   * 
+   * @param cursor the cursor returned with the previous page of results, or
+   *               {@code null} for the first page.
+   * @return the number of results before the requested page.
+   * @throws InvalidPageRequestException if the cursor is malformed.
+   */
+  private int decodeSearchCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty())
+      return 0;
+
+    try {
+      int offset = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+      if (offset < 0 || offset >= MAX_SEARCH_RESULTS)
+        throw new IllegalArgumentException("Search offset out of range: " + offset);
+
+      return offset;
+    } catch (IllegalArgumentException e) {
+      log.warn("Invalid search cursor: {}", cursor);
+      throw new InvalidPageRequestException("Invalid page cursor: " + cursor, e);
+    }
+  }
+
+  /**
+   * Encodes the number of results to skip into an opaque search cursor.
+   * 
+   * @param offset the number of results before the next page.
+   * @return the cursor of the next page of results.
+   */
+  private String encodeSearchCursor(int offset) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(Integer.toString(offset).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Creates the criteria matching products positioned after the one encoded in
+   * a cursor.
+   * 
+   * @param sort   the {@link ProductSort} of the page.
+   * @param cursor the cursor returned with the previous page.
+   * @return the keyset {@link Criteria}.
+   * @throws InvalidPageRequestException if the cursor is malformed.
+   */
+  private Criteria createKeysetCriteria(ProductSort sort, String cursor) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+      if (bytes.length < ID_LENGTH)
+        throw new IllegalArgumentException("Cursor is too short");
+
+      ObjectId productId = new ObjectId(Arrays.copyOf(bytes, ID_LENGTH));
+      if (sort == ProductSort.ID)
+        return Criteria.where("id").gt(productId);
+
+      String value = new String(bytes, ID_LENGTH, bytes.length - ID_LENGTH, StandardCharsets.UTF_8);
+      Object sortValue = sort == ProductSort.PRICE ? new BigDecimal(value) : value;
+      if (sort.isUnique())
+        return Criteria.where(sort.getProperty()).gt(sortValue);
+
+      return new Criteria().orOperator(
+          Criteria.where(sort.getProperty()).gt(sortValue),
+          Criteria.where(sort.getProperty()).is(sortValue).and("id").gt(productId));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      log.warn("Invalid page cursor: {}", cursor);
+      throw new InvalidPageRequestException("Invalid page cursor: " + cursor, e);
+    }
+  }
+
+  /**
+   * Returns the value of the sorted property of a product as it is stored in
+   * a cursor.
+   * 
+   * @param product the product.
+   * @param sort    the {@link ProductSort} of the page.
+   * @return the value of the sorted property, or {@code null} if products are
+   *         sorted by ID.
+   */
+  private String getSortValue(ProductView product, ProductSort sort) {
+    switch (sort) {
+      case PRICE:
+        return product.getPrice().toPlainString();
+      case NAME:
+        return product.getName();
+      default:
+        return null;
+    }
+  }
 }
@@ -0,0 +1,91 @@
+package com.drevotiuk.service;
+
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
+import com.drevotiuk.model.exception.ProductNotFoundException;
+import com.drevotiuk.repository.ReactiveProductRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service class for non-blocking product reads.
+ * <p>
+ * Mirrors the read operations of {@link ProductService} on the reactive
+ * MongoDB driver, so that no thread is held while waiting for the database.
+ * Products are emitted as they arrive, honouring the demand of the subscriber.
+ * </p>
+ * <p>
+ * The reactive driver opens a connection pool of its own, so it is only
+ * started with the "reactive" profile.
+ * </p>
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveProductService {
+  private final ReactiveProductRepository repository;
+  private final ProductServiceUtils serviceUtils;
+
+  /**
+   * Retrieves a page of products in ascending ID order and maps them to
+   * {@link ProductView} objects.
+   * <p>
+   * Logs the number of products fetched.
+   * </p>
+   * 
+   * @param cursor the cursor returned with the previous page, or {@code null}
+   *               for the first page.
+   * @param limit  the maximum number of products in the page.
+   * @return a {@link Mono} emitting a {@link ProductPage} containing the
+   *         products of the page and the cursor of the next one, or an
+   *         {@link InvalidPageRequestException} if the cursor or limit is
+   *         invalid.
+   */
+  public Mono<ProductPage> findAll(String cursor, int limit) {
+    return Mono.defer(() -> {
+      ObjectId after = serviceUtils.decodeCursor(cursor);
+      return repository.findViewsByIdGreaterThan(after, serviceUtils.createPageRequest(limit))
+          .collectList()
+          .map(products -> serviceUtils.createPage(products, limit))
+          .doOnNext(page -> log.info("Fetched {} products", page.getItems().size()));
+    });
+  }
+
+  /**
+   * Streams all products in ascending ID order and maps them to
+   * {@link ProductView} objects.
+   * 
+   * @return a {@link Flux} emitting a {@link ProductView} for every product.
+   */
+  public Flux<ProductView> stream() {
+    return repository.findViewsByIdGreaterThan(serviceUtils.decodeCursor(null), Sort.by("id"));
+  }
+
+  /**
+   * Retrieves a specific product by its ID.
+   * <p>
+   * Logs the ID of the product being fetched.
+   * </p>
+   * 
+   * @param productId the ID of the product to retrieve, must not be {@code null}.
+   * @return a {@link Mono} emitting a {@link ProductView} representing the
+   *         product, or a {@link ProductNotFoundException} if the product does
+   *         not exist.
+   */
+  public Mono<ProductView> find(ObjectId productId) {
+    log.info("Fetching product with ID {}", productId);
+    return repository.findViewById(productId)
+        .switchIfEmpty(Mono.error(() -> serviceUtils.createProductNotFoundException(productId)));
+  }
+}
@@ -0,0 +1,668 @@
+package com.drevotiuk.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.drevotiuk.model.OrderItem;
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.StockItemResult;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateRequest;
+import com.drevotiuk.model.StockUpdateResult;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service class for updating product quantities in stock.
+ * <p>
+ * A batch of orders is applied with bulk writes, where every product of every
+ * order is changed with an atomic {@code $inc}. The updates are partitioned
+ * by product across the stripes of a {@link StripedExecutor}, so unrelated
+ * products are updated in parallel while the updates of each product are
+ * applied in order. Each partition is written with a separate bulk write, so
+ * a batch costs up to one round trip per stripe, issued in parallel, and the
+ * outcome of each item is derived from the result of its partition. Fetches are
+ * guarded by {@code qty >= n}. Every update tags the product with the
+ * reservation ID in the {@value #RESERVATIONS_FIELD} array and only matches
+ * products not tagged yet, so that a redelivered update is not applied twice
+ * and the outcome of every item can be determined if the bulk write does not
+ * match all products.
+ * </p>
+ * <p>
+ * Tags are kept until the update is recorded as processed and then
+ * {@link #clearReservations(List) cleared}, so the array only holds pending
+ * reservations. Its size is bounded by refusing updates of a product that
+ * already holds the maximum number of pending reservations, instead of
+ * evicting the oldest tags, as an evicted tag would make an applied update
+ * look unapplied. A refused update is reported as
+ * {@link StockItemStatus#FAILED} and processed again later.
+ * </p>
+ * <p>
+ * Reservations are all-or-nothing unless disabled. If an order cannot be
+ * fetched as a whole, the tags serve as a rollback journal: every product still
+ * tagged with the reservation ID is reverted through the same stripes, which
+ * does not require multi-document transactions.
+ * </p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockService {
+  /** The field of a product document holding the IDs of recent reservations. */
+  static final String RESERVATIONS_FIELD = "reservations";
+
+  private final MongoTemplate mongoTemplate;
+  private final ProductChangeNotifier changeNotifier;
+  private final StripedExecutor stripedExecutor;
+  private final ProductMetrics metrics;
+
+  @Value("${product.stock.atomic-reservations}")
+  private boolean atomicReservations;
+  @Value("${product.stock.max-pending-reservations}")
+  private int maxPendingReservations;
+
+  /**
+   * Decreases product quantities by the quantities of the order items.
+   * <p>
+   * With atomic reservations, either all products of an order are updated or
+   * the applied updates of that order are rolled back.
+   * </p>
+   * 
+   * @param requests a {@link List} of {@link StockUpdateRequest} objects, one
+   *                 per order.
+   * @return a {@link List} of {@link StockUpdateResult} objects with the
+   *         outcome for each product, in the order of the requests.
+   */
+  public List<StockUpdateResult> fetch(List<StockUpdateRequest> requests) {
+    List<StockUpdateResult> results = update(requests, false);
+    if (atomicReservations)
+      results = rollbackIncomplete(results);
+
+    results.forEach(result -> metrics.recordStockUpdate(false, result));
+    return results;
+  }
+
+  /**
+   * Increases product quantities by the quantities of the order items.
+   * 
+   * @param requests a {@link List} of {@link StockUpdateRequest} objects, one
+   *                 per order.
+   * @return a {@link List} of {@link StockUpdateResult} objects with the
+   *         outcome for each product, in the order of the requests.
+   */
+  public List<StockUpdateResult> restore(List<StockUpdateRequest> requests) {
+    List<StockUpdateResult> results = update(requests, true);
+    results.forEach(result -> metrics.recordStockUpdate(true, result));
+    return results;
+  }
+
+  /**
+   * Removes the reservation tags of processed stock updates from their
+   * products, using one write.
+   * <p>
+   * Must only be called once the updates are recorded as processed, since the
+   * tags prevent a redelivered update from being applied twice until then.
+   * </p>
+   * 
+   * @param requests a {@link List} of {@link StockUpdateRequest} objects of the
+   *                 processed updates.
+   */
+  public void clearReservations(List<StockUpdateRequest> requests) {
+    Set<ObjectId> productIds = requests.stream()
+        .flatMap(request -> request.getItems().stream())
+        .map(OrderItem::getProductId)
+        .filter(StockService::isValidId)
+        .map(ObjectId::new)
+        .collect(Collectors.toSet());
+    if (productIds.isEmpty())
+      return;
+
+    Object[] reservationIds = requests.stream().map(StockUpdateRequest::getReservationId).toArray();
+    mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(productIds)),
+        new Update().pullAll(RESERVATIONS_FIELD, reservationIds), Product.class);
+  }
+
+  /**
+   * Rolls back the orders that could not be fetched as a whole.
+   * 
+   * @param results the {@link StockUpdateResult} objects of the orders.
+   * @return the results in the same order, where the results of incomplete
+   *         orders are replaced by the results of their rollback.
+   */
+  private List<StockUpdateResult> rollbackIncomplete(List<StockUpdateResult> results) {
+    List<StockUpdateResult> incomplete = results.stream()
+        .filter(result -> !result.isComplete())
+        .collect(Collectors.toList());
+    if (incomplete.isEmpty())
+      return results;
+
+    Map<String, StockUpdateResult> rolledBack = rollback(incomplete);
+    return results.stream()
+        .map(result -> rolledBack.getOrDefault(result.getReservationId(), result))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Applies quantity changes of a batch of orders with striped bulk writes and
+   * resolves the outcome for each product.
+   * <p>
+   * Notifies all instances of the changed products with a single event for the
+   * batch.
+   * </p>
+   * 
+   * @param requests    a {@link List} of {@link StockUpdateRequest} objects, one
+   *                    per order.
+   * @param isRestoring {@code true} if quantities are being restored,
+   *                    {@code false} if being fetched.
+   * @return a {@link List} of {@link StockUpdateResult} objects, in the order of
+   *         the requests.
+   */
+  private List<StockUpdateResult> update(List<StockUpdateRequest> requests, boolean isRestoring) {
+    List<OrderQuantities> orders = requests.stream()
+        .map(request -> new OrderQuantities(request.getReservationId(), mergeQuantities(request.getItems())))
+        .collect(Collectors.toList());
+
+    Instant updatedAt = ProductChangeNotifier.createUpdateTime();
+    Map<String, Map<ObjectId, StockItemStatus>> statuses = applyQuantities(orders, isRestoring, updatedAt);
+    Set<ObjectId> changed = new HashSet<>();
+    statuses.values().forEach(orderStatuses -> orderStatuses.forEach((id, status) -> {
+      if (status == StockItemStatus.UPDATED)
+        changed.add(id);
+    }));
+    if (!changed.isEmpty())
+      changeNotifier.notifyChanged(changed, updatedAt);
+
+    return orders.stream()
+        .map(order -> createResult(order, statuses.get(order.getReservationId())))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Creates the result of a single order from the outcomes of its products.
+   * 
+   * @param order    the {@link OrderQuantities} of the order.
+   * @param statuses a {@link Map} of product IDs to outcomes.
+   * @return a {@link StockUpdateResult} of the order.
+   */
+  private StockUpdateResult createResult(OrderQuantities order, Map<ObjectId, StockItemStatus> statuses) {
+    List<StockItemResult> items = order.getQuantities().entrySet().stream()
+        .map(entry -> new StockItemResult(entry.getKey(), entry.getValue(), isValidId(entry.getKey())
+            ? statuses.get(new ObjectId(entry.getKey()))
+            : StockItemStatus.NOT_FOUND))
+        .collect(Collectors.toList());
+    StockUpdateResult result = new StockUpdateResult(order.getReservationId(), items);
+    if (!result.isComplete())
+      log.warn("Stock update {} was not fully applied: {}", order.getReservationId(), items);
+    return result;
+  }
+
+  /**
+   * Reverts the applied updates of incomplete reservations with striped bulk
+   * writes.
+   * <p>
+   * Products with an unknown outcome are included as well, since only products
+   * tagged with the reservation ID are matched and the tag is removed on
+   * revert. If the bulk write does not tell which products were reverted, the
+   * outcome is resolved from the tags as for forward updates. Items whose
+   * revert failed get status {@link StockItemStatus#FAILED}, so that the
+   * reservation is processed again.
+   * </p>
+   * 
+   * @param results the {@link StockUpdateResult} objects of the incomplete
+   *                reservations.
+   * @return a {@link Map} of reservation IDs to results where reverted items
+   *         have status {@link StockItemStatus#ROLLED_BACK}.
+   */
+  private Map<String, StockUpdateResult> rollback(List<StockUpdateResult> results) {
+    Map<String, StockUpdateResult> rolledBack = new LinkedHashMap<>();
+    List<ProductUpdate> updates = new ArrayList<>();
+    Instant updatedAt = ProductChangeNotifier.createUpdateTime();
+    for (StockUpdateResult result : results) {
+      String reservationId = result.getReservationId();
+      for (StockItemResult item : result.getItems()) {
+        if (item.getStatus() != StockItemStatus.UPDATED && item.getStatus() != StockItemStatus.FAILED)
+          continue;
+
+        ObjectId productId = new ObjectId(item.getProductId());
+        updates.add(new ProductUpdate(reservationId, productId, item.getQty(),
+            new Query(Criteria.where("_id").is(productId).and(RESERVATIONS_FIELD).is(reservationId)),
+            new Update().inc("qty", item.getQty()).pull(RESERVATIONS_FIELD, reservationId)
+                .set("updatedAt", updatedAt)));
+      }
+
+      rolledBack.put(reservationId, result);
+    }
+
+    if (updates.isEmpty())
+      return rolledBack;
+
+    log.info("Rolling back {} items of {} stock updates", updates.size(), results.size());
+    List<StockItemStatus> statuses = executeStriped(updates);
+    if (statuses.contains(null))
+      resolveRollbackStatuses(updates, statuses);
+
+    Map<String, Map<ObjectId, StockItemStatus>> reverted = new HashMap<>();
+    for (int index = 0; index < updates.size(); index++) {
+      ProductUpdate update = updates.get(index);
+      if (statuses.get(index) == StockItemStatus.FAILED)
+        log.error("Rollback of stock update {} failed, product {} needs to be reverted", update.getReservationId(),
+            update.getProductId());
+      reverted.computeIfAbsent(update.getReservationId(), reservationId -> new HashMap<>())
+          .put(update.getProductId(), statuses.get(index));
+    }
+
+    Set<ObjectId> revertedIds = new HashSet<>();
+    rolledBack.replaceAll((reservationId, result) -> markRolledBack(result,
+        reverted.getOrDefault(reservationId, Map.of()), revertedIds));
+    if (!revertedIds.isEmpty())
+      changeNotifier.notifyChanged(revertedIds, updatedAt);
+    return rolledBack;
+  }
+
+  /**
+   * Marks the reverted items of a reservation as rolled back and collects the
+   * reverted products.
+   * 
+   * @param result      the {@link StockUpdateResult} of the reservation.
+   * @param reverted    a {@link Map} of product IDs to resolved outcomes of
+   *                    their revert: {@link StockItemStatus#UPDATED} if the
+   *                    product is no longer tagged with the reservation ID,
+   *                    {@link StockItemStatus#FAILED} if it still is, and
+   *                    {@link StockItemStatus#NOT_FOUND} if it was deleted.
+   * @param revertedIds the {@link Set} the IDs of the reverted products are
+   *                    added to.
+   * @return a {@link StockUpdateResult} where reverted items have status
+   *         {@link StockItemStatus#ROLLED_BACK}, items whose revert failed
+   *         have status {@link StockItemStatus#FAILED} and deleted products
+   *         have status {@link StockItemStatus#NOT_FOUND}.
+   */
+  private StockUpdateResult markRolledBack(StockUpdateResult result, Map<ObjectId, StockItemStatus> reverted,
+      Set<ObjectId> revertedIds) {
+    List<StockItemResult> items = result.getItems().stream()
+        .map(item -> {
+          if (item.getStatus() != StockItemStatus.UPDATED && item.getStatus() != StockItemStatus.FAILED)
+            return item;
+
+          ObjectId productId = new ObjectId(item.getProductId());
+          StockItemStatus revert = reverted.get(productId);
+          if (revert == StockItemStatus.UPDATED) {
+            revertedIds.add(productId);
+            return new StockItemResult(item.getProductId(), item.getQty(), StockItemStatus.ROLLED_BACK);
+          }
+
+          return revert == null ? item : new StockItemResult(item.getProductId(), item.getQty(), revert);
+        })
+        .collect(Collectors.toList());
+    return new StockUpdateResult(result.getReservationId(), items);
+  }
+
+  /**
+   * Merges order items referring to the same product, preserving their order.
+   * 
+   * @param orderItems a {@link List} of {@link OrderItem} objects.
+   * @return a {@link Map} of product IDs to total quantities.
+   */
+  private Map<String, Integer> mergeQuantities(List<OrderItem> orderItems) {
+    return orderItems.stream()
+        .collect(Collectors.toMap(OrderItem::getProductId, OrderItem::getQty, Integer::sum, LinkedHashMap::new));
+  }
+
+  /**
+   * Applies quantity changes of a batch of orders with striped bulk writes and
+   * resolves the outcome for each product.
+   * 
+   * @param orders      the {@link OrderQuantities} of the orders.
+   * @param isRestoring {@code true} if quantities are being restored,
+   *                    {@code false} if being fetched.
+   * @param updatedAt   the update time to write to the products.
+   * @return a {@link Map} of reservation IDs to maps of product IDs to
+   *         outcomes.
+   */
+  private Map<String, Map<ObjectId, StockItemStatus>> applyQuantities(List<OrderQuantities> orders,
+      boolean isRestoring, Instant updatedAt) {
+    List<ProductUpdate> updates = createUpdates(orders, isRestoring, updatedAt);
+    List<StockItemStatus> statuses = executeStriped(updates);
+    if (statuses.contains(null))
+      resolveStatuses(updates, statuses, isRestoring);
+
+    Map<String, Map<ObjectId, StockItemStatus>> orderStatuses = new LinkedHashMap<>();
+    orders.forEach(order -> orderStatuses.put(order.getReservationId(), new LinkedHashMap<>()));
+    for (int index = 0; index < updates.size(); index++) {
+      ProductUpdate update = updates.get(index);
+      orderStatuses.get(update.getReservationId()).put(update.getProductId(), statuses.get(index));
+    }
+    return orderStatuses;
+  }
+
+  /**
+   * Creates the updates for each product of each order.
+   * 
+   * @param orders      the {@link OrderQuantities} of the orders.
+   * @param isRestoring {@code true} if quantities are being restored,
+   *                    {@code false} if being fetched.
+   * @param updatedAt   the update time to write to the products.
+   * @return a {@link List} of {@link ProductUpdate} objects in the order of the
+   *         orders and their products.
+   */
+  private List<ProductUpdate> createUpdates(List<OrderQuantities> orders, boolean isRestoring,
+      Instant updatedAt) {
+    List<ProductUpdate> updates = new ArrayList<>();
+    orders.forEach(order -> order.getValidQuantities().forEach((id, qty) -> {
+      Criteria criteria = Criteria.where("_id").is(id)
+          .and(RESERVATIONS_FIELD).ne(order.getReservationId())
+          .and(RESERVATIONS_FIELD + "." + (maxPendingReservations - 1)).exists(false);
+      Update update = new Update().inc("qty", isRestoring ? qty : -qty)
+          .push(RESERVATIONS_FIELD, order.getReservationId())
+          .set("updatedAt", updatedAt);
+      if (!isRestoring)
+        criteria.and("qty").gte(qty);
+
+      updates.add(new ProductUpdate(order.getReservationId(), id, qty, new Query(criteria), update));
+    }));
+    return updates;
+  }
+
+  /**
+   * Partitions product updates by the stripe of the product and executes each
+   * partition as one unordered bulk write on its stripe.
+   * <p>
+   * Updates of different stripes run in parallel, while updates of the same
+   * product are applied in the order of their batches, also across concurrent
+   * batches. Waits for all partitions to complete. A failed update or a failed
+   * partition does not affect the outcome of the others. Each partition is a
+   * separate round trip, so a batch spread over all stripes costs as many bulk
+   * writes as there are stripes.
+   * </p>
+   * 
+   * @param updates the {@link ProductUpdate} objects to execute.
+   * @return a modifiable {@link List} with the outcome of each update, in the
+   *         order of the updates: {@link StockItemStatus#UPDATED} if it
+   *         matched, {@link StockItemStatus#FAILED} if its write failed, or
+   *         {@code null} if it is not known whether it matched.
+   */
+  private List<StockItemStatus> executeStriped(List<ProductUpdate> updates) {
+    Map<Integer, List<Integer>> partitions = IntStream.range(0, updates.size()).boxed()
+        .collect(Collectors.groupingBy(index -> stripedExecutor.stripeOf(updates.get(index).getProductId()),
+            LinkedHashMap::new, Collectors.toList()));
+    List<List<Integer>> partitionIndexes = new ArrayList<>();
+    List<CompletableFuture<List<StockItemStatus>>> written = new ArrayList<>();
+    partitions.forEach((stripe, indexes) -> {
+      List<ProductUpdate> partition = indexes.stream().map(updates::get).collect(Collectors.toList());
+      partitionIndexes.add(indexes);
+      written.add(stripedExecutor.submit(stripe, () -> executeUnordered(partition)));
+    });
+
+    StockItemStatus[] statuses = new StockItemStatus[updates.size()];
+    for (int partition = 0; partition < written.size(); partition++) {
+      List<Integer> indexes = partitionIndexes.get(partition);
+      List<StockItemStatus> partitionStatuses;
+      try {
+        partitionStatuses = written.get(partition).join();
+      } catch (CompletionException e) {
+        log.error("Bulk stock update of {} products failed", indexes.size(), e.getCause());
+        partitionStatuses = Collections.nCopies(indexes.size(), StockItemStatus.FAILED);
+      }
+
+      for (int position = 0; position < indexes.size(); position++)
+        statuses[indexes.get(position)] = partitionStatuses.get(position);
+    }
+    return Arrays.asList(statuses);
+  }
+
+  /**
+   * Executes product updates as one unordered bulk write.
+   * <p>
+   * The bulk write result only counts the matched updates, so the outcome of
+   * each update is known only if all updates without a write error matched.
+   * </p>
+   * 
+   * @param updates the {@link ProductUpdate} objects to execute.
+   * @return a {@link List} with the outcome of each update, as described by
+   *         {@link #executeStriped(List)}.
+   */
+  private List<StockItemStatus> executeUnordered(List<ProductUpdate> updates) {
+    BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    updates.forEach(update -> bulkOperations.updateOne(update.getQuery(), update.getUpdate()));
+    BulkWriteResult writeResult;
+    Set<Integer> failed;
+    try {
+      writeResult = bulkOperations.execute();
+      failed = Set.of();
+    } catch (BulkOperationException e) {
+      log.error("Bulk stock update partially failed: {}", e.getErrors());
+      writeResult = e.getResult();
+      failed = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+    }
+
+    boolean allMatched = writeResult.getMatchedCount() == updates.size() - failed.size();
+    List<StockItemStatus> statuses = new ArrayList<>(updates.size());
+    for (int index = 0; index < updates.size(); index++) {
+      if (failed.contains(index))
+        statuses.add(StockItemStatus.FAILED);
+      else
+        statuses.add(allMatched ? StockItemStatus.UPDATED : null);
+    }
+    return statuses;
+  }
+
+  /**
+   * Resolves the outcome of the updates whose outcome is not known after the
+   * bulk writes, using one query.
+   * <p>
+   * A missing product is {@link StockItemStatus#NOT_FOUND}. A product was
+   * updated only if it is tagged with the reservation ID, either by this write
+   * or by an earlier delivery of the same update. Otherwise a fetch lacked
+   * quantity if the product still has less than requested, and any other
+   * update was refused because the product holds too many pending
+   * reservations, or has an unknown outcome. If the query fails, the outcomes
+   * are unknown.
+   * </p>
+   * 
+   * @param updates     the executed {@link ProductUpdate} objects.
+   * @param statuses    the outcome of each update, where {@code null} entries
+   *                    are replaced by the resolved outcome.
+   * @param isRestoring {@code true} if quantities are being restored,
+   *                    {@code false} if being fetched.
+   */
+  private void resolveStatuses(List<ProductUpdate> updates, List<StockItemStatus> statuses, boolean isRestoring) {
+    Map<ObjectId, Document> documents = findUnresolved(updates, statuses);
+    if (documents == null)
+      return;
+
+    for (int index = 0; index < updates.size(); index++) {
+      if (statuses.get(index) != null)
+        continue;
+
+      ProductUpdate update = updates.get(index);
+      Document document = documents.get(update.getProductId());
+      if (document == null)
+        statuses.set(index, StockItemStatus.NOT_FOUND);
+      else if (isTagged(document, update.getReservationId()))
+        statuses.set(index, StockItemStatus.UPDATED);
+      else if (!isRestoring && !hasQuantity(document, update.getQty()))
+        statuses.set(index, StockItemStatus.INSUFFICIENT_QUANTITY);
+      else
+        statuses.set(index, StockItemStatus.FAILED);
+    }
+  }
+
+  /**
+   * Resolves the outcome of the reverts whose outcome is not known after the
+   * bulk writes, using one query.
+   * <p>
+   * A revert removes the tag of the reservation, so a product no longer
+   * tagged with the reservation ID is reverted, either by this write or by an
+   * earlier one, and a product still tagged is not. A missing product is
+   * {@link StockItemStatus#NOT_FOUND}. If the query fails, the outcomes are
+   * unknown.
+   * </p>
+   * 
+   * @param updates  the executed reverting {@link ProductUpdate} objects.
+   * @param statuses the outcome of each revert, where {@code null} entries are
+   *                 replaced by {@link StockItemStatus#UPDATED} if the product
+   *                 was reverted, or by the resolved outcome otherwise.
+   */
+  private void resolveRollbackStatuses(List<ProductUpdate> updates, List<StockItemStatus> statuses) {
+    Map<ObjectId, Document> documents = findUnresolved(updates, statuses);
+    if (documents == null)
+      return;
+
+    for (int index = 0; index < updates.size(); index++) {
+      if (statuses.get(index) != null)
+        continue;
+
+      ProductUpdate update = updates.get(index);
+      Document document = documents.get(update.getProductId());
+      if (document == null)
+        statuses.set(index, StockItemStatus.NOT_FOUND);
+      else if (isTagged(document, update.getReservationId()))
+        statuses.set(index, StockItemStatus.FAILED);
+      else
+        statuses.set(index, StockItemStatus.UPDATED);
+    }
+  }
+
+  /**
+   * Reads the quantity and reservation tags of the products of the updates
+   * with an unknown outcome.
+   * <p>
+   * If the query fails, the unknown outcomes are set to
+   * {@link StockItemStatus#FAILED}.
+   * </p>
+   * 
+   * @param updates  the executed {@link ProductUpdate} objects.
+   * @param statuses the outcome of each update, where {@code null} means
+   *                 unknown.
+   * @return a {@link Map} of product IDs to documents of the existing
+   *         products, or {@code null} if the query failed.
+   */
+  private Map<ObjectId, Document> findUnresolved(List<ProductUpdate> updates, List<StockItemStatus> statuses) {
+    Set<ObjectId> productIds = IntStream.range(0, updates.size())
+        .filter(index -> statuses.get(index) == null)
+        .mapToObj(index -> updates.get(index).getProductId())
+        .collect(Collectors.toSet());
+    Query query = new Query(Criteria.where("_id").in(productIds));
+    query.fields().include("_id").include("qty").include(RESERVATIONS_FIELD);
+    try {
+      return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Product.class)).stream()
+          .collect(Collectors.toMap(document -> document.getObjectId("_id"), Function.identity()));
+    } catch (DataAccessException e) {
+      log.error("Cannot resolve the outcome of stock updates of {} products", productIds.size(), e);
+      statuses.replaceAll(status -> status == null ? StockItemStatus.FAILED : status);
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether a product document is tagged with a reservation ID.
+   * 
+   * @param document      the product document.
+   * @param reservationId the reservation ID.
+   * @return {@code true} if the reservation ID is among the tags of the
+   *         product.
+   */
+  private static boolean isTagged(Document document, String reservationId) {
+    List<?> reservations = document.get(RESERVATIONS_FIELD, List.class);
+    return reservations != null && reservations.contains(reservationId);
+  }
+
+  /**
+   * Checks whether a product document has at least the given quantity.
+   * 
+   * @param document the product document.
+   * @param qty      the requested quantity.
+   * @return {@code true} if the quantity of the product is at least
+   *         {@code qty}.
+   */
+  private static boolean hasQuantity(Document document, int qty) {
+    Integer available = document.getInteger("qty");
+    return available != null && available >= qty;
+  }
+
+  /**
+   * Checks whether a product ID of an order item is a valid {@link ObjectId}.
+   * 
+   * @param productId the product ID to check, may be {@code null}.
+   * @return {@code true} if the product ID is valid.
+   */
+  private static boolean isValidId(String productId) {
+    return productId != null && ObjectId.isValid(productId);
+  }
+
+  /**
+   * Merged quantities of a single order.
+   */
+  @Getter
+  private static class OrderQuantities {
+    /** The ID identifying the stock update of the order. */
+    private final String reservationId;
+
+    /** The merged quantities keyed by product ID, including invalid IDs. */
+    private final Map<String, Integer> quantities;
+
+    /** The merged quantities of products with a valid ID. */
+    private final Map<ObjectId, Integer> validQuantities;
+
+    OrderQuantities(String reservationId, Map<String, Integer> quantities) {
+      this.reservationId = reservationId;
+      this.quantities = quantities;
+      this.validQuantities = quantities.entrySet().stream()
+          .filter(entry -> isValidId(entry.getKey()))
+          .collect(Collectors.toMap(entry -> new ObjectId(entry.getKey()), Map.Entry::getValue,
+              (first, second) -> first, LinkedHashMap::new));
+    }
+  }
+
+  /**
+   * A single product update of a bulk write.
+   */
+  @AllArgsConstructor
+  @Getter
+  private static class ProductUpdate {
+    /** The ID of the stock update the product update belongs to. */
+    private final String reservationId;
+
+    /** The ID of the updated product, used to select the stripe. */
+    private final ObjectId productId;
+
+    /** The quantity the product is changed by. */
+    private final int qty;
+
+    /** The query matching the product. */
+    private final Query query;
+
+    /** The update to apply. */
+    private final Update update;
+  }
+}
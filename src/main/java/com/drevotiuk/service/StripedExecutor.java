@@ -0,0 +1,79 @@
+package com.drevotiuk.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes tasks on a fixed set of single-threaded stripes.
+ * <p>
+ * Tasks for the same key always run on the same stripe, one after another in
+ * submission order, while tasks for keys of different stripes run in
+ * parallel. This keeps updates of a single product ordered without
+ * serializing updates of unrelated products.
+ * </p>
+ */
+@Component
+@Slf4j
+public class StripedExecutor {
+  private final List<ExecutorService> stripes;
+
+  /**
+   * Creates the stripes of the executor.
+   * 
+   * @param stripeCount the number of stripes, or a non-positive number to use
+   *                    one stripe per available processor.
+   */
+  public StripedExecutor(@Value("${product.stock.stripes}") int stripeCount) {
+    int count = stripeCount > 0 ? stripeCount : Runtime.getRuntime().availableProcessors();
+    ThreadFactory threadFactory = new CustomizableThreadFactory("stock-stripe-");
+    this.stripes = IntStream.range(0, count)
+        .mapToObj(stripe -> Executors.newSingleThreadExecutor(threadFactory))
+        .collect(Collectors.toList());
+    log.info("Started {} stock update stripes", count);
+  }
+
+  /**
+   * Determines the stripe a key belongs to.
+   * 
+   * @param key the key, must not be {@code null}.
+   * @return the index of the stripe.
+   */
+  public int stripeOf(Object key) {
+    return Math.floorMod(key.hashCode(), stripes.size());
+  }
+
+  /**
+   * Submits a task to a stripe.
+   * 
+   * @param <T>    the type of the task result.
+   * @param stripe the index of the stripe, as returned by
+   *               {@link #stripeOf(Object)}.
+   * @param task   the task to run.
+   * @return a {@link CompletableFuture} completed with the result of the task.
+   */
+  public <T> CompletableFuture<T> submit(int stripe, Supplier<T> task) {
+    return CompletableFuture.supplyAsync(task, stripes.get(stripe));
+  }
+
+  /**
+   * Stops accepting tasks and lets the submitted ones finish.
+   */
+  @PreDestroy
+  public void shutdown() {
+    stripes.forEach(ExecutorService::shutdown);
+  }
+}
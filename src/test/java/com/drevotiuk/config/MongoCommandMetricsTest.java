@@ -0,0 +1,54 @@
+package com.drevotiuk.config;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+public class MongoCommandMetricsTest {
+  @Test
+  void shouldReplaceFilterValuesWithPlaceholders() {
+    // given
+    BsonDocument command = BsonDocument.parse("{find: 'products', "
+        + "filter: {_id: {$gt: {$oid: '5f0000000000000000000000'}}, category: 'TOYS', "
+        + "$or: [{qty: {$gte: 5}}, {name: {$in: ['a', 'b']}}]}, sort: {_id: 1}, limit: 21}");
+
+    // when
+    String shape = MongoCommandMetrics.shapeOf("find", command);
+
+    // then
+    assertThat(BsonDocument.parse(shape)).isEqualTo(BsonDocument.parse("{filter: {_id: {$gt: '?'}, "
+        + "category: '?', $or: [{qty: {$gte: '?'}}, {name: {$in: ['?']}}]}, sort: {_id: 1}}"));
+  }
+
+  @Test
+  void shouldShapeFirstUpdateStatement() {
+    // given
+    BsonDocument command = BsonDocument.parse("{update: 'products', updates: ["
+        + "{q: {_id: 1, qty: {$gte: 3}}, u: {$inc: {qty: -3}}}]}");
+
+    // when
+    String shape = MongoCommandMetrics.shapeOf("update", command);
+
+    // then
+    assertThat(BsonDocument.parse(shape)).isEqualTo(BsonDocument.parse("{filter: {_id: '?', qty: {$gte: '?'}}}"));
+  }
+
+  @Test
+  void shouldResolveCollectionOfCommand() {
+    // when
+    // then
+    assertThat(MongoCommandMetrics.collectionOf("find", BsonDocument.parse("{find: 'products'}")))
+        .isEqualTo("products");
+    assertThat(MongoCommandMetrics.collectionOf("getMore", BsonDocument.parse("{getMore: 1, collection: 'products'}")))
+        .isEqualTo("products");
+    assertThat(MongoCommandMetrics.collectionOf("ping", BsonDocument.parse("{ping: 1}"))).isEqualTo("none");
+  }
+
+  @Test
+  void shouldSkipCommandsWithoutFilter() {
+    // when
+    // then
+    assertThat(MongoCommandMetrics.shapeOf("insert", BsonDocument.parse("{insert: 'products'}"))).isNull();
+  }
+}
@@ -0,0 +1,81 @@
+package com.drevotiuk.config;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.drevotiuk.model.Product;
+
+@ExtendWith(MockitoExtension.class)
+public class MongoIndexInitializerTest {
+  @Mock
+  private MongoTemplate mongoTemplate;
+  @Mock
+  private MongoConverter converter;
+  @Mock
+  private IndexOperations indexOperations;
+  private MongoIndexInitializer underTest;
+
+  @BeforeEach
+  void setUp() {
+    given(mongoTemplate.getConverter()).willReturn(converter);
+    willReturn(new MongoMappingContext()).given(converter).getMappingContext();
+    given(mongoTemplate.indexOps(Product.class)).willReturn(indexOperations);
+    underTest = new MongoIndexInitializer(mongoTemplate);
+  }
+
+  @Test
+  void shouldReplacePlainIndexWithUniqueIndex() {
+    // given
+    IndexInfo plainName = new IndexInfo(List.of(IndexField.create("name", Sort.Direction.ASC)), "name", false,
+        false, null);
+    given(indexOperations.getIndexInfo()).willReturn(List.of(plainName));
+
+    // when
+    underTest.ensureIndexes();
+
+    // then
+    InOrder inOrder = inOrder(indexOperations);
+    inOrder.verify(indexOperations).dropIndex("name");
+    inOrder.verify(indexOperations).ensureIndex(argThat(MongoIndexInitializerTest::isUnique));
+  }
+
+  @Test
+  void shouldFailWhenUniqueIndexCannotBeCreated() {
+    // given
+    given(indexOperations.getIndexInfo()).willReturn(List.of());
+    given(indexOperations.ensureIndex(any())).willAnswer(invocation -> {
+      if (isUnique(invocation.getArgument(0)))
+        throw new DuplicateKeyException("E11000 duplicate key error");
+      return "index";
+    });
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.ensureIndexes())
+        .isInstanceOf(IllegalStateException.class)
+        .hasCauseInstanceOf(DuplicateKeyException.class);
+    verify(indexOperations, never()).dropIndex(anyString());
+  }
+
+  private static boolean isUnique(IndexDefinition index) {
+    return Boolean.TRUE.equals(index.getIndexOptions().get("unique"));
+  }
+}
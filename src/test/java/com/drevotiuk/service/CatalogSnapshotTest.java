@@ -0,0 +1,127 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+public class CatalogSnapshotTest {
+  private static final ObjectId FIRST_ID = new ObjectId(new byte[12]);
+  private static final Duration MAX_AGE = Duration.ofHours(1);
+  private static final BsonDocument RESUME_TOKEN = new BsonDocument("_data", new BsonString("8263f1c2a4000000012b"));
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldRestoreWrittenProducts() {
+    // given
+    CatalogSnapshot underTest = new CatalogSnapshot(directory.resolve("catalog/products.snapshot").toString(),
+        MAX_AGE);
+    List<ProductView> products = List.of(
+        new ProductView(ObjectId.get(), "Toy car", "TOYS", new BigDecimal("10.5"), 5),
+        new ProductView(ObjectId.get(), "Тенісний м'яч", "SPORTS", new BigDecimal("123456789.123456"), 0));
+    CatalogStore written = new HeapCatalogStore();
+    products.forEach(written::put);
+    underTest.write(RESUME_TOKEN, written);
+
+    // when
+    CatalogStore restored = new HeapCatalogStore();
+    Optional<BsonDocument> resumeToken = underTest.read(restored);
+
+    // then
+    assertThat(resumeToken).contains(RESUME_TOKEN);
+    assertThat(restored.findAfter(new ProductFilter(), FIRST_ID, 10)).containsExactlyElementsOf(products);
+  }
+
+  @Test
+  void shouldRestoreCategoryByName() {
+    // given
+    CatalogSnapshot underTest = new CatalogSnapshot(directory.resolve("products.snapshot").toString(), MAX_AGE);
+    ProductView product = new ProductView(ObjectId.get(), "Garden hose", "GARDEN", BigDecimal.TEN, 5);
+    CatalogStore written = new HeapCatalogStore();
+    written.put(product);
+    underTest.write(RESUME_TOKEN, written);
+
+    // when
+    CatalogStore restored = new HeapCatalogStore();
+    underTest.read(restored);
+
+    // then
+    assertThat(restored.find(product.getId())).contains(product);
+  }
+
+  @Test
+  void shouldIgnoreTruncatedSnapshot() throws IOException {
+    // given
+    Path path = directory.resolve("products.snapshot");
+    CatalogSnapshot underTest = new CatalogSnapshot(path.toString(), MAX_AGE);
+    CatalogStore written = new HeapCatalogStore();
+    written.put(new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5));
+    underTest.write(RESUME_TOKEN, written);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+    // when
+    // then
+    assertThat(underTest.read(new HeapCatalogStore())).isEmpty();
+  }
+
+  @Test
+  void shouldIgnoreSnapshotOlderThanMaxAge() throws IOException {
+    // given
+    Path path = directory.resolve("products.snapshot");
+    CatalogSnapshot underTest = new CatalogSnapshot(path.toString(), MAX_AGE);
+    CatalogStore written = new HeapCatalogStore();
+    written.put(new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5));
+    underTest.write(RESUME_TOKEN, written);
+    ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+    bytes.putLong(2 * Integer.BYTES, System.currentTimeMillis() - MAX_AGE.plusMinutes(1).toMillis());
+    Files.write(path, bytes.array());
+
+    // when
+    // then
+    assertThat(underTest.read(new HeapCatalogStore())).isEmpty();
+  }
+
+  @Test
+  void shouldIgnoreMissingSnapshot() {
+    // given
+    CatalogSnapshot underTest = new CatalogSnapshot(directory.resolve("missing.snapshot").toString(), MAX_AGE);
+
+    // when
+    // then
+    assertThat(underTest.read(new HeapCatalogStore())).isEmpty();
+  }
+
+  @Test
+  void shouldBeDisabledWithoutPath() {
+    // given
+    CatalogSnapshot underTest = new CatalogSnapshot("", MAX_AGE);
+    CatalogStore written = new HeapCatalogStore();
+    written.put(new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5));
+
+    // when
+    underTest.write(RESUME_TOKEN, written);
+
+    // then
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(underTest.read(new HeapCatalogStore())).isEmpty();
+  }
+}
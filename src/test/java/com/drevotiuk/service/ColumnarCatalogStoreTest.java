@@ -0,0 +1,164 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+
+public class ColumnarCatalogStoreTest {
+  private static final ObjectId FIRST_ID = new ObjectId(new byte[12]);
+  private static final ProductFilter ALL = new ProductFilter();
+
+  private ColumnarCatalogStore underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ColumnarCatalogStore();
+  }
+
+  @Test
+  void shouldStoreAndFindProduct() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Jouet à tirer", "TOYS", new BigDecimal("10.50"), 5);
+
+    // when
+    underTest.put(product);
+
+    // then
+    assertThat(underTest.find(product.getId())).contains(product);
+    assertThat(underTest.find(ObjectId.get())).isEmpty();
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReturnPricesInMinorUnitScale() {
+    // given
+    ObjectId productId = ObjectId.get();
+    underTest.put(new ProductView(productId, "Toy car", "TOYS", BigDecimal.TEN, 5));
+
+    // when
+    ProductView found = underTest.find(productId).get();
+
+    // then
+    assertThat(found.getPrice()).isEqualTo(new BigDecimal("10.00"));
+  }
+
+  @Test
+  void shouldKeepProductsInIdOrder() {
+    // given
+    ProductView first = createProduct("First");
+    ProductView second = createProduct("Second");
+    ProductView third = createProduct("Third");
+
+    // when
+    underTest.put(third);
+    underTest.put(first);
+    underTest.put(second);
+
+    // then
+    assertThat(underTest.findAfter(ALL, FIRST_ID, 10)).containsExactly(first, second, third);
+    assertThat(underTest.findAfter(ALL, first.getId(), 1)).containsExactly(second);
+  }
+
+  @Test
+  void shouldFindFilteredProducts() {
+    // given
+    ProductView car = new ProductView(ObjectId.get(), "Toy car", "TOYS", new BigDecimal("10.00"), 5);
+    ProductView ball = new ProductView(ObjectId.get(), "Ball", "SPORTS", new BigDecimal("10.00"), 5);
+    ProductView train = new ProductView(ObjectId.get(), "Toy train", "TOYS", new BigDecimal("4.99"), 5);
+    ProductView plane = new ProductView(ObjectId.get(), "Toy plane", "TOYS", new BigDecimal("10.00"), 0);
+    ProductView boat = new ProductView(ObjectId.get(), "Toy boat", "TOYS", new BigDecimal("20.01"), 3);
+    List.of(car, ball, train, plane, boat).forEach(underTest::put);
+    ProductFilter filter = new ProductFilter(ProductCategory.TOYS, new BigDecimal("4.991"), new BigDecimal("20.019"),
+        true, null);
+
+    // when
+    // then
+    assertThat(underTest.findAfter(filter, FIRST_ID, 10)).containsExactly(car, boat);
+  }
+
+  @Test
+  void shouldReplaceStoredProduct() {
+    // given
+    ObjectId productId = ObjectId.get();
+    underTest.put(new ProductView(productId, "Car", "TOYS", new BigDecimal("10.00"), 5));
+    ProductView renamed = new ProductView(productId, "Remote controlled car", "ELECTRONICS",
+        new BigDecimal("25.00"), 2);
+    ProductView shortened = new ProductView(productId, "RC car", "ELECTRONICS", new BigDecimal("25.00"), 1);
+
+    // when
+    // then
+    underTest.put(renamed);
+    assertThat(underTest.find(productId)).contains(renamed);
+    underTest.put(shortened);
+    assertThat(underTest.find(productId)).contains(shortened);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRemoveProduct() {
+    // given
+    ProductView removed = createProduct("Removed");
+    ProductView kept = createProduct("Kept");
+    underTest.put(removed);
+    underTest.put(kept);
+
+    // when
+    underTest.remove(removed.getId());
+
+    // then
+    assertThat(underTest.find(removed.getId())).isEmpty();
+    assertThat(underTest.findAfter(ALL, FIRST_ID, 10)).containsExactly(kept);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeepRemainingProductsAfterCompaction() {
+    // given
+    List<ProductView> products = new ArrayList<>();
+    for (int i = 0; i < 3000; i++)
+      products.add(createProduct("Product " + i));
+    products.forEach(underTest::put);
+
+    // when
+    List<ProductView> kept = new ArrayList<>();
+    for (int i = 0; i < products.size(); i++) {
+      if (i % 3 == 0)
+        kept.add(products.get(i));
+      else
+        underTest.remove(products.get(i).getId());
+    }
+
+    // then
+    assertThat(underTest.size()).isEqualTo(kept.size());
+    assertThat(underTest.findAfter(ALL, FIRST_ID, products.size())).containsExactlyElementsOf(kept);
+  }
+
+  @Test
+  void shouldStoreAndFilterPriceWithMoreDecimalPlaces() {
+    // given
+    ProductView screw = new ProductView(ObjectId.get(), "Screw", "TOYS", new BigDecimal("0.015"), 5);
+    ProductView bolt = new ProductView(ObjectId.get(), "Bolt", "TOYS", new BigDecimal("0.025"), 5);
+    underTest.put(screw);
+    underTest.put(bolt);
+    ProductFilter filter = new ProductFilter(null, new BigDecimal("0.01"), new BigDecimal("0.02"), false, null);
+
+    // when
+    // then
+    assertThat(underTest.find(screw.getId())).contains(screw);
+    assertThat(underTest.findAfter(filter, FIRST_ID, 10)).containsExactly(screw);
+  }
+
+  private ProductView createProduct(String name) {
+    return new ProductView(ObjectId.get(), name, "TOYS", new BigDecimal("1.00"), 1);
+  }
+}
@@ -0,0 +1,78 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.drevotiuk.model.ProcessedMessage;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageDeduplicatorTest {
+  @Mock
+  private MongoTemplate mongoTemplate;
+  private MessageDeduplicator underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new MessageDeduplicator(mongoTemplate, Duration.ofHours(1), 100);
+  }
+
+  @Test
+  void shouldReportRecordedMessageAsProcessedWithoutQuery() {
+    // when
+    boolean before = underTest.isProcessed("fetch-qty", "message-id");
+    underTest.markProcessed("fetch-qty", "message-id");
+    boolean after = underTest.isProcessed("fetch-qty", "message-id");
+
+    // then
+    assertThat(before).isFalse();
+    assertThat(after).isTrue();
+    verify(mongoTemplate).insert(any(ProcessedMessage.class));
+    verify(mongoTemplate, times(1)).exists(any(Query.class), eq(ProcessedMessage.class));
+  }
+
+  @Test
+  void shouldReportMessageRecordedByAnotherInstanceAsProcessed() {
+    // given
+    given(mongoTemplate.exists(any(Query.class), eq(ProcessedMessage.class))).willReturn(true);
+
+    // when
+    boolean processed = underTest.isProcessed("fetch-qty", "message-id");
+
+    // then
+    assertThat(processed).isTrue();
+  }
+
+  @Test
+  void shouldIgnoreMessageRecordedConcurrently() {
+    // given
+    given(mongoTemplate.insert(any(ProcessedMessage.class))).willThrow(new DuplicateKeyException("Duplicate"));
+
+    // when
+    underTest.markProcessed("fetch-qty", "message-id");
+
+    // then
+    assertThat(underTest.isProcessed("fetch-qty", "message-id")).isTrue();
+  }
+
+  @Test
+  void shouldNeverReportMessageWithoutIdAsProcessed() {
+    // when
+    underTest.markProcessed("fetch-qty", null);
+    boolean processed = underTest.isProcessed("fetch-qty", null);
+
+    // then
+    assertThat(processed).isFalse();
+    verifyNoInteractions(mongoTemplate);
+  }
+}
@@ -0,0 +1,84 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.drevotiuk.model.ProductView;
+
+public class ProductCacheTest {
+  private ProductCache underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ProductCache(100, Duration.ofMinutes(1));
+  }
+
+  @Test
+  void shouldLoadProductOnlyOnce() {
+    // given
+    ObjectId productId = ObjectId.get();
+    ProductView product = new ProductView(productId, "Test product", "TOYS", BigDecimal.TEN, 80);
+    AtomicInteger loads = new AtomicInteger();
+
+    // when
+    underTest.get(productId, id -> {
+      loads.incrementAndGet();
+      return Optional.of(product);
+    });
+    Optional<ProductView> cached = underTest.get(productId, id -> {
+      loads.incrementAndGet();
+      return Optional.of(product);
+    });
+
+    // then
+    assertThat(cached).contains(product);
+    assertThat(loads).hasValue(1);
+    assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    assertThat(underTest.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReloadProductAfterEviction() {
+    // given
+    ObjectId productId = ObjectId.get();
+    ProductView product = new ProductView(productId, "Test product", "TOYS", BigDecimal.TEN, 80);
+    AtomicInteger loads = new AtomicInteger();
+    underTest.get(productId, id -> {
+      loads.incrementAndGet();
+      return Optional.of(product);
+    });
+
+    // when
+    underTest.evict(productId);
+    underTest.get(productId, id -> {
+      loads.incrementAndGet();
+      return Optional.of(product);
+    });
+
+    // then
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void shouldNotCacheMissingProducts() {
+    // given
+    ObjectId productId = ObjectId.get();
+
+    // when
+    Optional<ProductView> missing = underTest.get(productId, id -> Optional.empty());
+    Optional<ProductView> found = underTest.get(productId,
+        id -> Optional.of(new ProductView(id, "Test product", "TOYS", BigDecimal.TEN, 80)));
+
+    // then
+    assertThat(missing).isEmpty();
+    assertThat(found).isPresent();
+  }
+}
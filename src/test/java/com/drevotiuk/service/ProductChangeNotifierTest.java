@@ -0,0 +1,102 @@
+package com.drevotiuk.service;
+
+import static org.mockito.BDDMockito.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.drevotiuk.model.ProductChangedEvent;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductChangeNotifierTest {
+  @Mock
+  private ProductCache productCache;
+  @Mock
+  private AmqpTemplate amqpTemplate;
+  private ProductChangeNotifier underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ProductChangeNotifier(productCache, amqpTemplate);
+    ReflectionTestUtils.setField(underTest, "productServiceExchange", "product-service");
+    ReflectionTestUtils.setField(underTest, "productChangedRoutingKey", "product.changed");
+  }
+
+  @Test
+  void shouldEvictLocallyAndBroadcastChange() {
+    // given
+    ObjectId productId = ObjectId.get();
+
+    // when
+    underTest.notifyChanged(productId, Instant.now());
+
+    // then
+    verify(productCache).evict(productId);
+    verify(amqpTemplate).convertAndSend(eq("product-service"), eq("product.changed"),
+        any(ProductChangedEvent.class));
+  }
+
+  @Test
+  void shouldBroadcastBatchAsSingleEventWithUpdateTime() {
+    // given
+    ObjectId first = ObjectId.get();
+    ObjectId second = ObjectId.get();
+    Instant updatedAt = ProductChangeNotifier.createUpdateTime();
+
+    // when
+    underTest.notifyChanged(List.of(first, second), updatedAt);
+
+    // then
+    verify(productCache).evict(first);
+    verify(productCache).evict(second);
+    verify(amqpTemplate).convertAndSend(eq("product-service"), eq("product.changed"),
+        argThat((ProductChangedEvent event) -> event.getVersion() == updatedAt.toEpochMilli()
+            && event.getProductIds().equals(List.of(first.toHexString(), second.toHexString()))));
+  }
+
+  @Test
+  void shouldEvictLocallyWhenBroadcastFails() {
+    // given
+    ObjectId productId = ObjectId.get();
+    willThrow(new AmqpIOException(new IOException("Connection refused")))
+        .given(amqpTemplate).convertAndSend(anyString(), anyString(), any(Object.class));
+
+    // when
+    underTest.notifyChanged(productId, Instant.now());
+
+    // then
+    verify(productCache).evict(productId);
+  }
+
+  @Test
+  void shouldEvictOnReceivedChange() {
+    // given
+    ObjectId productId = ObjectId.get();
+
+    // when
+    underTest.consumeProductChanged(new ProductChangedEvent(List.of(productId.toHexString()), 1L));
+
+    // then
+    verify(productCache).evict(productId);
+  }
+
+  @Test
+  void shouldEvictAllOnReceivedChangeOfAnyProduct() {
+    // when
+    underTest.consumeProductChanged(new ProductChangedEvent(null, 1L));
+
+    // then
+    verify(productCache).evictAll();
+  }
+}
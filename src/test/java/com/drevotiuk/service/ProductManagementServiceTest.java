@@ -2,9 +2,19 @@ package com.drevotiuk.service;
 
 import static org.mockito.BDDMockito.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
+import javax.validation.Validation;
+
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 
 import static org.assertj.core.api.Assertions.*;
@@ -15,14 +25,39 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import com.drevotiuk.model.OrderItem;
 import com.drevotiuk.model.Product;
 import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductSuggestion;
+import com.drevotiuk.model.ProductUpsertResult;
+import com.drevotiuk.model.ProductUpsertStatus;
 import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.StockItemResult;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateRequest;
+import com.drevotiuk.model.StockUpdateResult;
 import com.drevotiuk.model.exception.ProductExistsException;
 import com.drevotiuk.model.exception.ProductNotFoundException;
 import com.drevotiuk.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 
 @ExtendWith(MockitoExtension.class)
 public class ProductManagementServiceTest {
@@ -30,37 +65,73 @@ public class ProductManagementServiceTest {
   private ProductRepository productRepository;
   @Mock
   private MongoTemplate mongoTemplate;
+  @Mock
+  private ProductChangeNotifier changeNotifier;
+  @Mock
+  private StockService stockService;
+  @Mock
+  private AmqpTemplate amqpTemplate;
+  @Mock
+  private ProductNameIndex nameIndex;
+  @Mock
+  private MessageDeduplicator deduplicator;
   private ProductServiceUtils productServiceUtils;
   private ProductManagementService underTest;
 
   @BeforeEach
   void setUp() {
     productServiceUtils = new ProductServiceUtils();
-    underTest = new ProductManagementService(productRepository, productServiceUtils, mongoTemplate);
+    underTest = new ProductManagementService(productRepository, productServiceUtils, mongoTemplate,
+        new ObjectMapper(), changeNotifier, nameIndex, stockService, amqpTemplate,
+        deduplicator, Validation.buildDefaultValidatorFactory().getValidator());
   }
 
   @Test
   void shouldFindAllProducts() {
     // when
-    underTest.findAll();
+    underTest.findAll(null, 20);
+
+    // then
+    verify(productRepository).findViewsByIdGreaterThan(any(ObjectId.class), any(Pageable.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldExportProductsAsNdjson() throws Exception {
+    // given
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.TEN, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "HEALTH", BigDecimal.ONE, 2);
+    CloseableIterator<ProductView> cursor = mock(CloseableIterator.class);
+    given(cursor.hasNext()).willReturn(true, true, false);
+    given(cursor.next()).willReturn(first, second);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.stream(any(Query.class), eq(ProductView.class), eq("products"))).willReturn(cursor);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    // when
+    underTest.export(outputStream);
 
     // then
-    verify(productRepository).findAll();
+    String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0]).contains("\"id\":\"" + first.getId().toHexString() + "\"", "\"name\":\"First\"");
+    assertThat(lines[1]).contains("\"name\":\"Second\"");
+    verify(cursor).close();
   }
 
   @Test
   void shouldFindProductById() {
     // given
     ObjectId productId = ObjectId.get();
-    Product product = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
-    given(productRepository.findById(productId)).willReturn(Optional.of(product));
+    ProductView product = new ProductView(productId, "Test product", "TOYS", BigDecimal.TEN, 80);
+    given(productRepository.findViewById(productId)).willReturn(Optional.of(product));
 
     // when
     ProductView found = underTest.find(productId);
 
     // then
-    assertThat(found).isEqualTo(new ProductView(product));
-    verify(productRepository).findById(productId);
+    assertThat(found).isEqualTo(product);
+    verify(productRepository).findViewById(productId);
   }
 
   @Test
@@ -74,7 +145,7 @@ public class ProductManagementServiceTest {
         .isInstanceOf(ProductNotFoundException.class)
         .hasMessageContaining("Product not found");
 
-    verify(productRepository).findById(productId);
+    verify(productRepository).findViewById(productId);
   }
 
   @Test
@@ -93,6 +164,9 @@ public class ProductManagementServiceTest {
 
     Product capturedProduct = productArgumentCaptor.getValue();
     assertThat(capturedProduct).isEqualTo(product);
+    assertThat(capturedProduct.getUpdatedAt()).isNotNull();
+    verify(changeNotifier).notifyChanged(product.getId(), capturedProduct.getUpdatedAt());
+    verify(nameIndex).put(new ProductSuggestion(product));
   }
 
   @Test
@@ -115,9 +189,9 @@ public class ProductManagementServiceTest {
   void shouldUpdateProduct() {
     // given
     ObjectId productId = ObjectId.get();
-    Product initial = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
     Product updated = new Product(productId, "Test product", ProductCategory.HEALTH, BigDecimal.ONE, 40);
-    given(productRepository.findById(productId)).willReturn(Optional.of(initial));
+    given(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(Product.class))).willReturn(updated);
 
     // when
     ProductView result = underTest.update(productId, updated);
@@ -125,11 +199,15 @@ public class ProductManagementServiceTest {
     // then
     assertThat(result).isEqualTo(new ProductView(updated));
 
-    ArgumentCaptor<Product> productArgumentCaptor = ArgumentCaptor.forClass(Product.class);
-    verify(productRepository).save(productArgumentCaptor.capture());
-
-    Product capturedProduct = productArgumentCaptor.getValue();
-    assertThat(capturedProduct).isEqualTo(updated);
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate).findAndModify(any(Query.class), updateArgumentCaptor.capture(),
+        any(FindAndModifyOptions.class), eq(Product.class));
+    assertThat(updateArgumentCaptor.getValue().getUpdateObject()).containsOnlyKeys("$set");
+    assertThat(updateArgumentCaptor.getValue().getUpdateObject().get("$set", Document.class))
+        .containsOnlyKeys("category", "price", "qty", "updatedAt");
+    verify(productRepository, never()).save(any(Product.class));
+    verify(changeNotifier).notifyChanged(eq(productId), any(Instant.class));
+    verify(nameIndex).put(new ProductSuggestion(updated));
   }
 
   @Test
@@ -137,7 +215,6 @@ public class ProductManagementServiceTest {
     // given
     ObjectId productId = ObjectId.get();
     Product updated = new Product(productId, "Test product 1", ProductCategory.HEALTH, BigDecimal.ONE, 40);
-    given(productRepository.findById(productId)).willReturn(Optional.empty());
 
     // when
     // then
@@ -145,7 +222,7 @@ public class ProductManagementServiceTest {
         .isInstanceOf(ProductNotFoundException.class)
         .hasMessageContaining("Product not found");
 
-    verify(productRepository, never()).save(updated);
+    verify(changeNotifier, never()).notifyChanged(eq(productId), any(Instant.class));
   }
 
   @Test
@@ -159,6 +236,8 @@ public class ProductManagementServiceTest {
 
     // then
     verify(productRepository).deleteById(productId);
+    verify(changeNotifier).notifyChanged(eq(productId), any(Instant.class));
+    verify(nameIndex).remove(productId);
   }
 
   @Test
@@ -175,4 +254,260 @@ public class ProductManagementServiceTest {
 
     verify(productRepository, never()).deleteById(productId);
   }
+
+  @Test
+  void shouldUpsertProductsByNameAndReportEachOutcome() {
+    // given
+    ObjectId createdId = ObjectId.get();
+    Product created = new Product(null, "Created", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    Product invalid = new Product(null, "Invalid", ProductCategory.TOYS, BigDecimal.ONE.negate(), 5);
+    Product updated = new Product(null, "Updated", ProductCategory.HEALTH, BigDecimal.ONE, 3);
+    BulkOperations bulkOperations = mock(BulkOperations.class);
+    BulkWriteResult writeResult = mock(BulkWriteResult.class);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willReturn(writeResult);
+    given(writeResult.getUpserts()).willReturn(List.of(new BulkWriteUpsert(0, new BsonObjectId(createdId))));
+    ProductSuggestion updatedSuggestion = new ProductSuggestion(ObjectId.get(), "Updated", "HEALTH", BigDecimal.ONE);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(ProductSuggestion.class), eq("products")))
+        .willReturn(List.of(updatedSuggestion));
+
+    // when
+    List<ProductUpsertResult> results = underTest.upsertAll(List.of(created, invalid, updated));
+
+    // then
+    assertThat(results).extracting(ProductUpsertResult::getIndex, ProductUpsertResult::getName,
+        ProductUpsertResult::getStatus)
+        .containsExactly(
+            tuple(0, "Created", ProductUpsertStatus.CREATED),
+            tuple(1, "Invalid", ProductUpsertStatus.FAILED),
+            tuple(2, "Updated", ProductUpsertStatus.UPDATED));
+    assertThat(results.get(0).getProductId()).isEqualTo(createdId.toHexString());
+    assertThat(results.get(1).getError()).contains("Price");
+    verify(bulkOperations, times(2)).upsert(any(Query.class), any(Update.class));
+    verify(changeNotifier).notifyAllChanged(any(Instant.class));
+    verify(nameIndex).putAll(List.of(new ProductSuggestion(createdId, "Created", "TOYS", BigDecimal.TEN),
+        updatedSuggestion));
+    verify(nameIndex, never()).requestRebuild();
+  }
+
+  @Test
+  void shouldSetQuantityOnlyWhenUpsertCreatesProduct() {
+    // given
+    Product product = new Product(null, "Toy car", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    BulkOperations bulkOperations = mock(BulkOperations.class);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willReturn(mock(BulkWriteResult.class));
+
+    // when
+    underTest.upsertAll(List.of(product));
+
+    // then
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations).upsert(any(Query.class), updateArgumentCaptor.capture());
+    Document update = updateArgumentCaptor.getValue().getUpdateObject();
+    assertThat(update.get("$set", Document.class)).containsOnlyKeys("category", "price", "updatedAt");
+    assertThat(update.get("$setOnInsert", Document.class)).containsEntry("qty", 5);
+  }
+
+  @Test
+  void shouldReportEveryViolatedConstraintOfUpsert() {
+    // given
+    Product product = new Product(null, " ", null, BigDecimal.TEN, -1);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(mock(BulkOperations.class));
+
+    // when
+    List<ProductUpsertResult> results = underTest.upsertAll(List.of(product));
+
+    // then
+    assertThat(results.get(0).getError())
+        .isEqualTo("Category is required, Name is required, Quantity cannot be negative");
+  }
+
+  @Test
+  void shouldReportFailedUpsertsOfBulkWrite() {
+    // given
+    Product first = new Product(null, "First", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    Product second = new Product(null, "Second", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    BulkOperations bulkOperations = mock(BulkOperations.class);
+    BulkWriteResult writeResult = mock(BulkWriteResult.class);
+    BulkOperationException exception = mock(BulkOperationException.class);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willThrow(exception);
+    given(exception.getResult()).willReturn(writeResult);
+    given(exception.getErrors())
+        .willReturn(List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)));
+
+    // when
+    List<ProductUpsertResult> results = underTest.upsertAll(List.of(first, second));
+
+    // then
+    assertThat(results).extracting(ProductUpsertResult::getStatus)
+        .containsExactly(ProductUpsertStatus.UPDATED, ProductUpsertStatus.FAILED);
+    assertThat(results.get(1).getError()).isEqualTo("duplicate key");
+    verify(changeNotifier).notifyAllChanged(any(Instant.class));
+  }
+
+  @Test
+  void shouldNotNotifyWhenAllUpsertsAreInvalid() {
+    // given
+    Product product = new Product(null, " ", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(mock(BulkOperations.class));
+
+    // when
+    List<ProductUpsertResult> results = underTest.upsertAll(List.of(product));
+
+    // then
+    assertThat(results).extracting(ProductUpsertResult::getStatus).containsExactly(ProductUpsertStatus.FAILED);
+    verify(changeNotifier, never()).notifyAllChanged(any(Instant.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldReserveQuantityOfBatchAndReplyWithResults() {
+    // given
+    String productId = ObjectId.get().toString();
+    StockUpdateResult first = new StockUpdateResult("first", List.of());
+    StockUpdateResult second = new StockUpdateResult("second", List.of());
+    given(stockService.fetch(anyList())).willReturn(List.of(first, second));
+
+    // when
+    underTest.consumeFetchQty(List.of(
+        createMessage("first", "[{\"productId\":\"" + productId + "\",\"qty\":3}]"),
+        createMessage("second", "[{\"productId\":\"" + productId + "\",\"qty\":2}]")));
+
+    // then
+    ArgumentCaptor<List<StockUpdateRequest>> captor = ArgumentCaptor.forClass(List.class);
+    verify(stockService).fetch(captor.capture());
+    assertThat(captor.getValue())
+        .extracting(StockUpdateRequest::getReservationId)
+        .containsExactly("first", "second");
+    assertThat(captor.getValue().get(0).getItems())
+        .extracting(OrderItem::getProductId, OrderItem::getQty)
+        .containsExactly(tuple(productId, 3));
+    verify(amqpTemplate).convertAndSend(any(), any(), eq(first), any(MessagePostProcessor.class));
+    verify(amqpTemplate).convertAndSend(any(), any(), eq(second), any(MessagePostProcessor.class));
+    verify(deduplicator).markProcessed("fetch-qty", "first");
+    verify(deduplicator).markProcessed("fetch-qty", "second");
+    verify(stockService).clearReservations(captor.getValue());
+  }
+
+  @Test
+  void shouldRestoreQuantityThroughStockService() {
+    // given
+    given(stockService.restore(anyList())).willReturn(List.of(new StockUpdateResult("id", List.of())));
+
+    // when
+    underTest.consumeRestoreQty(List.of(createMessage("message-id", "[]")));
+
+    // then
+    verify(stockService).restore(anyList());
+  }
+
+  @Test
+  void shouldDropDuplicateFetchQtyMessage() {
+    // given
+    given(deduplicator.isProcessed("fetch-qty", "message-id")).willReturn(true);
+
+    // when
+    underTest.consumeFetchQty(List.of(createMessage("message-id", "[]")));
+
+    // then
+    verify(stockService, never()).fetch(anyList());
+    verify(stockService).clearReservations(argThat(requests -> requests.size() == 1
+        && requests.get(0).getReservationId().equals("message-id")));
+    verifyNoInteractions(amqpTemplate);
+  }
+
+  @Test
+  void shouldDropFetchQtyMessageWithoutIdOnEveryDelivery() {
+    // given
+    Message message = createMessage(null, "[{\"productId\":\"" + new ObjectId() + "\",\"qty\":3}]");
+
+    // when
+    underTest.consumeFetchQty(List.of(message));
+    underTest.consumeFetchQty(List.of(message));
+
+    // then
+    verify(stockService, never()).fetch(anyList());
+    verify(stockService, never()).clearReservations(anyList());
+    verifyNoInteractions(deduplicator, amqpTemplate);
+  }
+
+  @Test
+  void shouldSkipUnreadableFetchQtyMessage() {
+    // given
+    given(stockService.fetch(anyList())).willReturn(List.of());
+
+    // when
+    underTest.consumeFetchQty(List.of(createMessage("invalid", "not json"), createMessage("valid", "[]")));
+
+    // then
+    verify(deduplicator, never()).isProcessed("fetch-qty", "invalid");
+    verify(stockService).fetch(argThat(requests -> requests.size() == 1));
+  }
+
+  @Test
+  void shouldNotRecordBatchWhenFetchFails() {
+    // given
+    given(stockService.fetch(anyList())).willThrow(new IllegalStateException("Unexpected"));
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.consumeFetchQty(
+        List.of(createMessage("first", "[]"), createMessage("second", "[]"))))
+        .isInstanceOf(IllegalStateException.class);
+    verify(deduplicator, never()).markProcessed(anyString(), anyString());
+    verifyNoInteractions(amqpTemplate);
+  }
+
+  @Test
+  void shouldRedeliverOnlyFailedStockUpdatesOfBatch() {
+    // given
+    String productId = ObjectId.get().toString();
+    StockUpdateResult reserved = new StockUpdateResult("reserved",
+        List.of(new StockItemResult(productId, 1, StockItemStatus.UPDATED)));
+    StockUpdateResult failed = new StockUpdateResult("failed",
+        List.of(new StockItemResult(productId, 1, StockItemStatus.FAILED)));
+    given(stockService.fetch(anyList())).willReturn(List.of(reserved, failed));
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.consumeFetchQty(
+        List.of(createMessage("reserved", "[]"), createMessage("failed", "[]"))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("1 of 2");
+    verify(amqpTemplate).convertAndSend(any(), any(), eq(reserved), any(MessagePostProcessor.class));
+    verify(amqpTemplate, never()).convertAndSend(any(), any(), eq(failed), any(MessagePostProcessor.class));
+    verify(deduplicator).markProcessed("fetch-qty", "reserved");
+    verify(deduplicator, never()).markProcessed("fetch-qty", "failed");
+    verify(stockService).clearReservations(argThat(requests -> requests.size() == 1
+        && requests.get(0).getReservationId().equals("reserved")));
+  }
+
+  @Test
+  void shouldRedeliverStockUpdateWhoseOutcomeCannotBePublished() {
+    // given
+    StockUpdateResult unpublished = new StockUpdateResult("unpublished", List.of());
+    StockUpdateResult published = new StockUpdateResult("published", List.of());
+    given(stockService.fetch(anyList())).willReturn(List.of(unpublished, published));
+    willThrow(new AmqpConnectException(new IOException("Connection reset"))).given(amqpTemplate)
+        .convertAndSend(any(), any(), eq(unpublished), any(MessagePostProcessor.class));
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.consumeFetchQty(
+        List.of(createMessage("unpublished", "[]"), createMessage("published", "[]"))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("1 of 2");
+    verify(amqpTemplate).convertAndSend(any(), any(), eq(published), any(MessagePostProcessor.class));
+    verify(deduplicator).markProcessed("fetch-qty", "published");
+    verify(deduplicator, never()).markProcessed("fetch-qty", "unpublished");
+  }
+
+  private Message createMessage(String messageId, String body) {
+    MessageProperties properties = new MessageProperties();
+    properties.setMessageId(messageId);
+    return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+  }
 }
@@ -0,0 +1,55 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.drevotiuk.model.StockItemResult;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateResult;
+import com.drevotiuk.model.StockVerdict;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ProductMetricsTest {
+  private SimpleMeterRegistry registry;
+  private ProductMetrics underTest;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    underTest = new ProductMetrics(registry);
+  }
+
+  @Test
+  void shouldRecordOrderSizeAndItemOutcomes() {
+    // given
+    StockUpdateResult result = new StockUpdateResult("reservation", List.of(
+        new StockItemResult("first", 1, StockItemStatus.ROLLED_BACK),
+        new StockItemResult("second", 2, StockItemStatus.INSUFFICIENT_QUANTITY)));
+
+    // when
+    underTest.recordStockUpdate(false, result);
+
+    // then
+    assertThat(registry.get("product.stock.order.items").tag("operation", "fetch").summary().totalAmount())
+        .isEqualTo(2);
+    assertThat(registry.get("product.stock.items").tag("operation", "fetch")
+        .tag("status", "INSUFFICIENT_QUANTITY").counter().count()).isEqualTo(1);
+    assertThat(registry.get("product.stock.items").tag("operation", "restore")
+        .tag("status", "INSUFFICIENT_QUANTITY").counter().count()).isZero();
+  }
+
+  @Test
+  void shouldRecordPricingVerdict() {
+    // when
+    underTest.recordPricing(StockVerdict.NOT_FOUND);
+
+    // then
+    assertThat(registry.get("product.pricing.items").tag("verdict", "NOT_FOUND").counter().count()).isEqualTo(1);
+    assertThat(registry.get("product.pricing.items").tag("verdict", "IN_STOCK").counter().count()).isZero();
+  }
+}
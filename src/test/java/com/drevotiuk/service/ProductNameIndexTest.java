@@ -0,0 +1,214 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.ProductSuggestion;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductNameIndexTest {
+  @Mock
+  private MongoTemplate mongoTemplate;
+  private ProductNameIndex underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ProductNameIndex(mongoTemplate);
+  }
+
+  @Test
+  void shouldSuggestProductsByPrefixIgnoringCase() {
+    // given
+    ProductSuggestion car = createSuggestion("Toy car");
+    ProductSuggestion train = createSuggestion("toy Train");
+    underTest.put(train);
+    underTest.put(car);
+    underTest.put(createSuggestion("Tennis ball"));
+
+    // when
+    List<ProductSuggestion> suggestions = underTest.suggest("TOY", 10);
+
+    // then
+    assertThat(suggestions).containsExactly(car, train);
+  }
+
+  @Test
+  void shouldLimitSuggestions() {
+    // given
+    underTest.put(createSuggestion("Toy car"));
+    underTest.put(createSuggestion("Toy train"));
+
+    // when
+    // then
+    assertThat(underTest.suggest("toy", 1)).hasSize(1);
+  }
+
+  @Test
+  void shouldReplaceRenamedAndRemoveDeletedProducts() {
+    // given
+    ProductSuggestion product = createSuggestion("Toy car");
+    ProductSuggestion renamed = new ProductSuggestion(product.getId(), "Racing car", "TOYS", BigDecimal.TEN);
+    ProductSuggestion deleted = createSuggestion("Toy train");
+    underTest.put(product);
+    underTest.put(deleted);
+
+    // when
+    underTest.put(renamed);
+    underTest.remove(deleted.getId());
+
+    // then
+    assertThat(underTest.suggest("toy", 10)).isEmpty();
+    assertThat(underTest.suggest("rac", 10)).containsExactly(renamed);
+  }
+
+  @Test
+  void shouldPutBatchOfProductsKeepingNameOrder() {
+    // given
+    ProductSuggestion car = createSuggestion("Toy car");
+    ProductSuggestion train = createSuggestion("Toy train");
+    ProductSuggestion repricedCar = new ProductSuggestion(car.getId(), "Toy car", "TOYS", BigDecimal.ONE);
+    ProductSuggestion boat = createSuggestion("Toy boat");
+    underTest.put(train);
+    underTest.put(car);
+
+    // when
+    underTest.putAll(List.of(repricedCar, boat, createSuggestion("Ball")));
+
+    // then
+    assertThat(underTest.suggest("toy", 10)).containsExactly(boat, repricedCar, train);
+    assertThat(underTest.suggest("b", 10)).hasSize(1);
+  }
+
+  @Test
+  void shouldRebuildFromDatabase() {
+    // given
+    ProductSuggestion product = createSuggestion("Toy car");
+    underTest.put(createSuggestion("Stale toy"));
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.stream(any(Query.class), eq(ProductSuggestion.class), eq("products")))
+        .willReturn(createCursor(List.of(product)));
+
+    // when
+    underTest.rebuild();
+
+    // then
+    assertThat(underTest.suggest("toy", 10)).containsExactly(product);
+    assertThat(underTest.suggest("stale", 10)).isEmpty();
+  }
+
+  @Test
+  void shouldRepeatRebuildRequestedDuringRebuild() {
+    // given
+    ProductSuggestion stale = createSuggestion("Toy car");
+    ProductSuggestion current = createSuggestion("Toy train");
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.stream(any(Query.class), eq(ProductSuggestion.class), eq("products")))
+        .willAnswer(invocation -> {
+          underTest.rebuild();
+          underTest.rebuild();
+          return createCursor(List.of(stale));
+        })
+        .willReturn(createCursor(List.of(current)));
+
+    // when
+    underTest.rebuild();
+
+    // then
+    verify(mongoTemplate, times(2)).stream(any(Query.class), eq(ProductSuggestion.class), eq("products"));
+    assertThat(underTest.suggest("toy", 10)).containsExactly(current);
+  }
+
+  @Test
+  void shouldRebuildInBackgroundWhenRequested() {
+    // given
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.stream(any(Query.class), eq(ProductSuggestion.class), eq("products")))
+        .willReturn(createCursor(List.of(createSuggestion("Toy car"))));
+
+    // when
+    underTest.requestRebuild();
+
+    // then
+    verify(mongoTemplate, timeout(1000)).stream(any(Query.class), eq(ProductSuggestion.class), eq("products"));
+    underTest.shutdown();
+  }
+
+  @Test
+  void shouldBuildInBackgroundWhenApplicationIsReady() {
+    // given
+    AtomicReference<String> buildThread = new AtomicReference<>();
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.stream(any(Query.class), eq(ProductSuggestion.class), eq("products")))
+        .willAnswer(invocation -> {
+          buildThread.set(Thread.currentThread().getName());
+          return createCursor(List.of(createSuggestion("Toy car")));
+        });
+
+    // when
+    underTest.onApplicationReady();
+
+    // then
+    verify(mongoTemplate, timeout(1000)).stream(any(Query.class), eq(ProductSuggestion.class), eq("products"));
+    assertThat(buildThread.get()).isEqualTo("product-name-index");
+    underTest.shutdown();
+  }
+
+  @Test
+  void shouldNotSuggestForBlankPrefix() {
+    // given
+    underTest.put(createSuggestion("Toy car"));
+
+    // when
+    // then
+    assertThat(underTest.suggest(" ", 10)).isEmpty();
+  }
+
+  @Test
+  void shouldThrowWhenSuggestionLimitIsOutOfRange() {
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.suggest("toy", ProductNameIndex.MAX_SUGGESTIONS + 1))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessageStartingWith("Suggestion limit must be between");
+  }
+
+  private ProductSuggestion createSuggestion(String name) {
+    return new ProductSuggestion(ObjectId.get(), name, "TOYS", BigDecimal.TEN);
+  }
+
+  private CloseableIterator<ProductSuggestion> createCursor(List<ProductSuggestion> products) {
+    Iterator<ProductSuggestion> iterator = products.iterator();
+    return new CloseableIterator<ProductSuggestion>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public ProductSuggestion next() {
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+}
@@ -0,0 +1,200 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductView;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductReplicaTest {
+  private static final ObjectId FIRST_ID = new ObjectId(new byte[12]);
+
+  @Mock
+  private MongoTemplate mongoTemplate;
+  @Mock
+  private MongoConverter converter;
+  @Mock
+  private CatalogSnapshot snapshot;
+  private ProductReplica underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ProductReplica(mongoTemplate, snapshot, false, Duration.ofSeconds(1), false);
+  }
+
+  @Test
+  void shouldNotBeReadyWhenDisabled() {
+    // when
+    underTest.start();
+
+    // then
+    assertThat(underTest.isReady()).isFalse();
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  @Test
+  void shouldNotSaveSnapshotBeforeReady() {
+    // given
+    given(snapshot.isEnabled()).willReturn(true);
+
+    // when
+    underTest.saveSnapshot();
+
+    // then
+    verify(snapshot, never()).write(any(), any());
+  }
+
+  @Test
+  void shouldApplyInsertedProduct() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5);
+
+    // when
+    insert(product);
+
+    // then
+    assertThat(underTest.find(product.getId())).contains(product);
+    assertThat(underTest.findAll(List.of(product.getId(), ObjectId.get())))
+        .containsOnlyKeys(product.getId());
+  }
+
+  @Test
+  void shouldRemoveDeletedProduct() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5);
+    insert(product);
+
+    // when
+    underTest.apply(OperationType.DELETE, product.getId(), null);
+
+    // then
+    assertThat(underTest.find(product.getId())).isEmpty();
+  }
+
+  @Test
+  void shouldRemoveUpdatedProductThatNoLongerExists() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5);
+    insert(product);
+
+    // when
+    underTest.apply(OperationType.UPDATE, product.getId(), null);
+
+    // then
+    assertThat(underTest.find(product.getId())).isEmpty();
+  }
+
+  @Test
+  void shouldFindFilteredProductsInIdOrder() {
+    // given
+    ProductView car = new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5);
+    ProductView ball = new ProductView(ObjectId.get(), "Ball", "SPORTS", BigDecimal.TEN, 5);
+    ProductView train = new ProductView(ObjectId.get(), "Toy train", "TOYS", BigDecimal.ONE, 5);
+    ProductView plane = new ProductView(ObjectId.get(), "Toy plane", "TOYS", BigDecimal.TEN, 0);
+    ProductView boat = new ProductView(ObjectId.get(), "Toy boat", "TOYS", new BigDecimal("20"), 3);
+    List.of(car, ball, train, plane, boat).forEach(this::insert);
+    ProductFilter filter = new ProductFilter(ProductCategory.TOYS, new BigDecimal("5"), null, true, null);
+
+    // when
+    // then
+    assertThat(underTest.findAfter(filter, FIRST_ID, 10)).containsExactly(car, boat);
+    assertThat(underTest.findAfter(filter, FIRST_ID, 1)).containsExactly(car);
+    assertThat(underTest.findAfter(filter, car.getId(), 10)).containsExactly(boat);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldReloadWhenChangeCannotBeApplied() {
+    // given
+    ObjectId productId = ObjectId.get();
+    Document document = new Document("_id", productId).append("price", "not a price");
+    ChangeStreamDocument<Document> change = mock(ChangeStreamDocument.class);
+    given(change.getOperationType()).willReturn(OperationType.UPDATE);
+    given(change.getDocumentKey()).willReturn(new BsonDocument("_id", new BsonObjectId(productId)));
+    given(change.getFullDocument()).willReturn(document);
+    given(mongoTemplate.getConverter()).willReturn(converter);
+    given(converter.read(ProductView.class, document)).willThrow(new MappingException("Cannot read price"));
+
+    // when
+    boolean applied = underTest.applyChange(change);
+
+    // then
+    assertThat(applied).isFalse();
+    assertThat(underTest.isReady()).isFalse();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldLeaveOutProductThatCannotBeStoredAndKeepFollowing() {
+    // given
+    underTest = new ProductReplica(mongoTemplate, snapshot, false, Duration.ofSeconds(1), true);
+    ProductView product = new ProductView(ObjectId.get(), "Toy car", "TOYS", BigDecimal.TEN, 5);
+    insert(product);
+    Document document = new Document("_id", product.getId()).append("category", null);
+    ChangeStreamDocument<Document> change = mock(ChangeStreamDocument.class);
+    given(change.getOperationType()).willReturn(OperationType.UPDATE);
+    given(change.getDocumentKey()).willReturn(new BsonDocument("_id", new BsonObjectId(product.getId())));
+    given(change.getFullDocument()).willReturn(document);
+    given(converter.read(ProductView.class, document))
+        .willReturn(new ProductView(product.getId(), "Toy car", null, BigDecimal.TEN, 5));
+
+    // when
+    boolean applied = underTest.applyChange(change);
+
+    // then
+    assertThat(applied).isTrue();
+    assertThat(underTest.find(product.getId())).isEmpty();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldReportLagFromClusterTimeOfAppliedChange() {
+    // given
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    underTest.bindTo(registry);
+    int clusterTime = (int) (System.currentTimeMillis() / 1000) - 5;
+    ChangeStreamDocument<Document> change = mock(ChangeStreamDocument.class);
+    given(change.getOperationType()).willReturn(OperationType.DELETE);
+    given(change.getDocumentKey()).willReturn(new BsonDocument("_id", new BsonObjectId(ObjectId.get())));
+    given(change.getClusterTime()).willReturn(new BsonTimestamp(clusterTime, 1));
+    assertThat(registry.get("product.replica.lag").gauge().value()).isNaN();
+
+    // when
+    boolean applied = underTest.applyChange(change);
+
+    // then
+    assertThat(applied).isTrue();
+    assertThat(registry.get("product.replica.lag").gauge().value()).isCloseTo(5.0, within(1.5));
+  }
+
+  private void insert(ProductView product) {
+    Document document = new Document("_id", product.getId()).append("name", product.getName());
+    given(mongoTemplate.getConverter()).willReturn(converter);
+    given(converter.read(ProductView.class, document)).willReturn(product);
+    underTest.apply(OperationType.INSERT, product.getId(), document);
+  }
+}
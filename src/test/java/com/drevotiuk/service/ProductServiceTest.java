@@ -3,6 +3,8 @@ package com.drevotiuk.service;
 import static org.mockito.BDDMockito.*;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import org.bson.types.ObjectId;
@@ -12,36 +14,116 @@ import static org.assertj.core.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 
+import com.drevotiuk.model.CartLinePrice;
+import com.drevotiuk.model.CartPrice;
 import com.drevotiuk.model.OrderItem;
 import com.drevotiuk.model.Product;
 import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSort;
 import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.StockVerdict;
 import com.drevotiuk.model.exception.ProductNotFoundException;
 import com.drevotiuk.repository.ProductRepository;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(MockitoExtension.class)
 public class ProductServiceTest {
   @Mock
   private ProductRepository productRepository;
+  @Mock
+  private MongoTemplate mongoTemplate;
+  @Mock
+  private ProductNameIndex nameIndex;
+  @Mock
+  private ProductReplica replica;
   private ProductServiceUtils productServiceUtils;
   private ProductService underTest;
 
   @BeforeEach
   void setUp() {
     productServiceUtils = new ProductServiceUtils();
-    underTest = new ProductService(productRepository, productServiceUtils);
+    underTest = new ProductService(productRepository, productServiceUtils, mongoTemplate,
+        new ProductCache(100, Duration.ofMinutes(1)), nameIndex, replica,
+        new ProductMetrics(new SimpleMeterRegistry()));
   }
 
   @Test
   void canFindAllProducts() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Test product", "TOYS", BigDecimal.TEN, 80);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(ProductView.class), eq("products"))).willReturn(List.of(product));
+
+    // when
+    ProductPage page = underTest.findAll(new ProductFilter(), null, 20);
+
+    // then
+    assertThat(page.getItems()).containsExactly(product);
+    assertThat(page.getNext()).isNull();
+  }
+
+  @Test
+  void shouldFindFilteredProductsSortedByPrice() {
+    // given
+    ProductFilter filter = new ProductFilter(ProductCategory.TOYS, BigDecimal.ONE, null, true, ProductSort.PRICE);
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.ONE, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(ProductView.class), eq("products")))
+        .willReturn(List.of(first, second));
+
+    // when
+    ProductPage page = underTest.findAll(filter, null, 1);
+
+    // then
+    assertThat(page.getItems()).containsExactly(first);
+    assertThat(page.getNext()).isNotNull();
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(ProductView.class), eq("products"));
+    assertThat(queryCaptor.getValue().getSortObject()).containsEntry("price", 1).containsEntry("id", 1);
+    assertThat(queryCaptor.getValue().getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldFindProductsInReplicaWhenReady() {
+    // given
+    ProductFilter filter = new ProductFilter(ProductCategory.TOYS, null, null, false, null);
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.ONE, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+    given(replica.isReady()).willReturn(true);
+    given(replica.findAfter(eq(filter), any(ObjectId.class), eq(2))).willReturn(List.of(first, second));
+
     // when
-    underTest.findAll();
+    ProductPage page = underTest.findAll(filter, null, 1);
 
     // then
-    verify(productRepository).findAll();
+    assertThat(page.getItems()).containsExactly(first);
+    assertThat(page.getNext()).isEqualTo(productServiceUtils.encodeCursor(first.getId()));
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  @Test
+  void shouldSearchProductsByName() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Wooden toy", "TOYS", BigDecimal.TEN, 80);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(ProductView.class), eq("products"))).willReturn(List.of(product));
+
+    // when
+    ProductPage page = underTest.search("toy", null, 20);
+
+    // then
+    assertThat(page.getItems()).containsExactly(product);
+    assertThat(page.getNext()).isNull();
   }
 
   @Test
@@ -49,14 +131,45 @@ public class ProductServiceTest {
     // given
     ObjectId productId = ObjectId.get();
     Product product = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
-    given(productRepository.findById(productId)).willReturn(Optional.of(product));
+    given(productRepository.findViewById(productId)).willReturn(Optional.of(new ProductView(product)));
 
     // when
     ProductView found = underTest.find(productId);
 
     // then
     assertThat(found).isEqualTo(new ProductView(product));
-    verify(productRepository).findById(productId);
+    verify(productRepository).findViewById(productId);
+  }
+
+  @Test
+  void shouldFindProductByIdInReplicaWhenReady() {
+    // given
+    ObjectId productId = ObjectId.get();
+    ProductView product = new ProductView(productId, "Test product", "TOYS", BigDecimal.TEN, 80);
+    given(replica.isReady()).willReturn(true);
+    given(replica.find(productId)).willReturn(Optional.of(product));
+
+    // when
+    ProductView found = underTest.find(productId);
+
+    // then
+    assertThat(found).isEqualTo(product);
+    verifyNoInteractions(productRepository);
+  }
+
+  @Test
+  void shouldServeRepeatedLookupsFromCache() {
+    // given
+    ObjectId productId = ObjectId.get();
+    Product product = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
+    given(productRepository.findViewById(productId)).willReturn(Optional.of(new ProductView(product)));
+
+    // when
+    underTest.find(productId);
+    underTest.consumeAndProduceTotalPrice(new OrderItem(productId.toString(), 1));
+
+    // then
+    verify(productRepository, times(1)).findViewById(productId);
   }
 
   @Test
@@ -70,7 +183,7 @@ public class ProductServiceTest {
         .isInstanceOf(ProductNotFoundException.class)
         .hasMessageContaining("Product not found");
 
-    verify(productRepository).findById(productId);
+    verify(productRepository).findViewById(productId);
   }
 
   @Test
@@ -79,7 +192,7 @@ public class ProductServiceTest {
     ObjectId productId = ObjectId.get();
     Product product = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
     OrderItem item = new OrderItem(productId.toString(), 3);
-    given(productRepository.findById(productId)).willReturn(Optional.of(product));
+    given(productRepository.findViewById(productId)).willReturn(Optional.of(new ProductView(product)));
 
     // when
     BigDecimal result = underTest.consumeAndProduceTotalPrice(item);
@@ -89,7 +202,7 @@ public class ProductServiceTest {
         .isNotNull()
         .isEqualTo(BigDecimal.valueOf(30));
 
-    verify(productRepository).findById(productId);
+    verify(productRepository).findViewById(productId);
   }
 
   @Test
@@ -98,13 +211,60 @@ public class ProductServiceTest {
     ObjectId productId = ObjectId.get();
     Product product = new Product(productId, "Test product", ProductCategory.TOYS, BigDecimal.TEN, 80);
     OrderItem item = new OrderItem(productId.toString(), 81);
-    given(productRepository.findById(productId)).willReturn(Optional.of(product));
+    given(productRepository.findViewById(productId)).willReturn(Optional.of(new ProductView(product)));
 
     // when
     BigDecimal result = underTest.consumeAndProduceTotalPrice(item);
 
     // then
     assertThat(result).isNull();
-    verify(productRepository).findById(productId);
+    verify(productRepository).findViewById(productId);
+  }
+
+  @Test
+  void shouldProduceCartPriceWithSingleLookup() {
+    // given
+    ObjectId firstId = ObjectId.get();
+    ObjectId secondId = ObjectId.get();
+    Product first = new Product(firstId, "First", ProductCategory.TOYS, BigDecimal.TEN, 80);
+    Product second = new Product(secondId, "Second", ProductCategory.TOYS, BigDecimal.ONE, 1);
+    given(productRepository.findViewsByIdIn(anyCollection()))
+        .willReturn(List.of(new ProductView(first), new ProductView(second)));
+
+    // when
+    CartPrice result = underTest.consumeAndProduceCartPrice(List.of(
+        new OrderItem(firstId.toString(), 3),
+        new OrderItem(secondId.toString(), 2),
+        new OrderItem(ObjectId.get().toString(), 1)));
+
+    // then
+    assertThat(result.getLines()).extracting(CartLinePrice::getVerdict).containsExactly(
+        StockVerdict.IN_STOCK,
+        StockVerdict.INSUFFICIENT_QUANTITY,
+        StockVerdict.NOT_FOUND);
+    assertThat(result.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(32));
+    assertThat(result.isAvailable()).isFalse();
+    verify(productRepository, times(1)).findViewsByIdIn(anyCollection());
+  }
+
+  @Test
+  void shouldCheckStockOfCartAgainstMergedQuantities() {
+    // given
+    ObjectId productId = ObjectId.get();
+    Product product = new Product(productId, "Product", ProductCategory.TOYS, BigDecimal.TEN, 5);
+    given(productRepository.findViewsByIdIn(anyCollection())).willReturn(List.of(new ProductView(product)));
+
+    // when
+    CartPrice result = underTest.consumeAndProduceCartPrice(List.of(
+        new OrderItem(productId.toString(), 3),
+        new OrderItem(productId.toString(), 3)));
+
+    // then
+    assertThat(result.getLines()).extracting(CartLinePrice::getVerdict).containsExactly(
+        StockVerdict.INSUFFICIENT_QUANTITY,
+        StockVerdict.INSUFFICIENT_QUANTITY);
+    assertThat(result.getLines()).extracting(CartLinePrice::getTotal)
+        .containsExactly(BigDecimal.valueOf(30), BigDecimal.valueOf(30));
+    assertThat(result.isAvailable()).isFalse();
   }
 }
@@ -2,10 +2,28 @@ package com.drevotiuk.service;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
 
+import com.drevotiuk.model.ProductCategory;
+import com.drevotiuk.model.ProductFilter;
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductSort;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
 import com.drevotiuk.model.exception.ProductNotFoundException;
 
 public class ProductServiceUtilsTest {
@@ -25,4 +43,181 @@ public class ProductServiceUtilsTest {
     // then
     assertThat(e).isInstanceOf(ProductNotFoundException.class);
   }
+
+  @Test
+  void shouldDecodeEncodedCursor() {
+    // given
+    ObjectId productId = new ObjectId("66e441940271e6c85203d755");
+
+    // when
+    ObjectId decoded = underTest.decodeCursor(underTest.encodeCursor(productId));
+
+    // then
+    assertThat(decoded).isEqualTo(productId);
+  }
+
+  @Test
+  void shouldThrowWhenDecodingInvalidCursor() {
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.decodeCursor("not-a-cursor"))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessageStartingWith("Invalid page cursor");
+  }
+
+  @Test
+  void shouldThrowWhenPageLimitIsOutOfRange() {
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.createPageRequest(ProductServiceUtils.MAX_PAGE_LIMIT + 1))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessageStartingWith("Page limit must be between");
+  }
+
+  @Test
+  void shouldCreatePageWithNextCursor() {
+    // given
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.TEN, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+
+    // when
+    ProductPage page = underTest.createPage(List.of(first, second), 1);
+
+    // then
+    assertThat(page.getItems()).containsExactly(first);
+    assertThat(underTest.decodeCursor(page.getNext())).isEqualTo(first.getId());
+  }
+
+  @Test
+  void shouldCreateLastPageWithoutNextCursor() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Test product", "TOYS", BigDecimal.TEN, 1);
+
+    // when
+    ProductPage page = underTest.createPage(List.of(product), 1);
+
+    // then
+    assertThat(page.getItems()).containsExactly(product);
+    assertThat(page.getNext()).isNull();
+  }
+
+  @Test
+  void shouldCreatePageQueryOfFilter() {
+    // given
+    ProductFilter filter = new ProductFilter(ProductCategory.TOYS, BigDecimal.ONE, BigDecimal.TEN, true,
+        ProductSort.NAME);
+
+    // when
+    Query query = underTest.createPageQuery(filter, null, 20);
+
+    // then
+    assertThat(query.getQueryObject().get("$and", List.class)).hasSize(4);
+    assertThat(query.getSortObject()).containsOnlyKeys("name");
+    assertThat(query.getFieldsObject()).containsOnlyKeys("name", "category", "price", "qty");
+    assertThat(query.getLimit()).isEqualTo(21);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldContinuePriceSortedPageAfterCursor() {
+    // given
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.TEN, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+    String cursor = underTest.createPage(List.of(first, second), 1, ProductSort.PRICE).getNext();
+    ProductFilter filter = new ProductFilter(null, null, null, false, ProductSort.PRICE);
+
+    // when
+    Query query = underTest.createPageQuery(filter, cursor, 1);
+
+    // then
+    List<Document> criteria = query.getQueryObject().get("$and", List.class);
+    assertThat(criteria).hasSize(1);
+    assertThat(criteria.get(0)).containsKey("$or");
+    assertThat(query.getSortObject()).containsOnlyKeys("price", "id");
+  }
+
+  @Test
+  void shouldMapPriceCriteriaOfPageQueryAsDecimals() {
+    // given
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.afterPropertiesSet();
+    ProductView product = new ProductView(ObjectId.get(), "Toy car", "TOYS", new BigDecimal("10.50"), 1);
+    String cursor = underTest.createPage(List.of(product, product), 1, ProductSort.PRICE).getNext();
+    ProductFilter filter = new ProductFilter(null, BigDecimal.ONE, null, false, ProductSort.PRICE);
+    Query query = underTest.createPageQuery(filter, cursor, 1);
+
+    // when
+    Document mapped = new QueryMapper(converter).getMappedObject(query.getQueryObject(),
+        mappingContext.getPersistentEntity(ProductView.class));
+
+    // then
+    List<Object> prices = new ArrayList<>();
+    collectPrices(mapped, prices);
+    assertThat(prices).containsExactly(new Decimal128(BigDecimal.ONE), new Decimal128(new BigDecimal("10.50")),
+        new Decimal128(new BigDecimal("10.50")));
+  }
+
+  @Test
+  void shouldThrowWhenPriceRangeIsInverted() {
+    // given
+    ProductFilter filter = new ProductFilter(null, BigDecimal.TEN, BigDecimal.ONE, false, null);
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.createPageQuery(filter, null, 20))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessageStartingWith("Minimum price");
+  }
+
+  @Test
+  void shouldCreateSearchQueryRankedByScore() {
+    // when
+    Query query = underTest.createSearchQuery("wooden toy", null, 20);
+
+    // then
+    assertThat(query.getQueryObject()).containsKey("$text");
+    assertThat(query.getSortObject()).containsOnlyKeys("score");
+    assertThat(query.getSkip()).isZero();
+    assertThat(query.getLimit()).isEqualTo(21);
+  }
+
+  @Test
+  void shouldSkipPreviousSearchResults() {
+    // given
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.TEN, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+    String cursor = underTest.createSearchPage(List.of(first, second), null, 1).getNext();
+
+    // when
+    Query query = underTest.createSearchQuery("toy", cursor, 1);
+
+    // then
+    assertThat(query.getSkip()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldThrowWhenSearchTextIsBlank() {
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.createSearchQuery(" ", null, 20))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessageStartingWith("Search text");
+  }
+
+  private void collectPrices(Object criteria, List<Object> prices) {
+    if (criteria instanceof List)
+      ((List<?>) criteria).forEach(element -> collectPrices(element, prices));
+    if (!(criteria instanceof Document))
+      return;
+
+    for (Map.Entry<String, Object> entry : ((Document) criteria).entrySet()) {
+      if (!entry.getKey().equals("price"))
+        collectPrices(entry.getValue(), prices);
+      else if (entry.getValue() instanceof Document)
+        prices.addAll(((Document) entry.getValue()).values());
+      else
+        prices.add(entry.getValue());
+    }
+  }
 }
@@ -0,0 +1,102 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.math.BigDecimal;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.drevotiuk.model.ProductPage;
+import com.drevotiuk.model.ProductView;
+import com.drevotiuk.model.exception.InvalidPageRequestException;
+import com.drevotiuk.model.exception.ProductNotFoundException;
+import com.drevotiuk.repository.ReactiveProductRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveProductServiceTest {
+  @Mock
+  private ReactiveProductRepository productRepository;
+  private ReactiveProductService underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new ReactiveProductService(productRepository, new ProductServiceUtils());
+  }
+
+  @Test
+  void shouldFindPageOfProducts() {
+    // given
+    ProductView first = new ProductView(ObjectId.get(), "First", "TOYS", BigDecimal.ONE, 1);
+    ProductView second = new ProductView(ObjectId.get(), "Second", "TOYS", BigDecimal.TEN, 2);
+    given(productRepository.findViewsByIdGreaterThan(any(ObjectId.class), any(Pageable.class)))
+        .willReturn(Flux.just(first, second));
+
+    // when
+    ProductPage page = underTest.findAll(null, 1).block();
+
+    // then
+    assertThat(page.getItems()).containsExactly(first);
+    assertThat(page.getNext()).isNotNull();
+  }
+
+  @Test
+  void shouldSignalInvalidCursorOnSubscription() {
+    // given
+    Mono<ProductPage> page = underTest.findAll("not a cursor", 20);
+
+    // when
+    // then
+    assertThatThrownBy(page::block).isInstanceOf(InvalidPageRequestException.class);
+    verifyNoInteractions(productRepository);
+  }
+
+  @Test
+  void shouldStreamAllProducts() {
+    // given
+    ProductView product = new ProductView(ObjectId.get(), "Test product", "TOYS", BigDecimal.TEN, 80);
+    given(productRepository.findViewsByIdGreaterThan(any(ObjectId.class), any(Sort.class)))
+        .willReturn(Flux.just(product));
+
+    // when
+    // then
+    assertThat(underTest.stream().collectList().block()).containsExactly(product);
+  }
+
+  @Test
+  void shouldFindProductById() {
+    // given
+    ObjectId productId = ObjectId.get();
+    ProductView product = new ProductView(productId, "Test product", "TOYS", BigDecimal.TEN, 80);
+    given(productRepository.findViewById(productId)).willReturn(Mono.just(product));
+
+    // when
+    ProductView found = underTest.find(productId).block();
+
+    // then
+    assertThat(found).isEqualTo(product);
+  }
+
+  @Test
+  void shouldFailWhenProductNotFound() {
+    // given
+    ObjectId productId = ObjectId.get();
+    given(productRepository.findViewById(productId)).willReturn(Mono.empty());
+
+    // when
+    // then
+    assertThatThrownBy(() -> underTest.find(productId).block())
+        .isInstanceOf(ProductNotFoundException.class)
+        .hasMessageContaining("Product not found");
+  }
+}
@@ -0,0 +1,375 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.drevotiuk.model.OrderItem;
+import com.drevotiuk.model.Product;
+import com.drevotiuk.model.StockItemResult;
+import com.drevotiuk.model.StockItemStatus;
+import com.drevotiuk.model.StockUpdateRequest;
+import com.drevotiuk.model.StockUpdateResult;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class StockServiceTest {
+  @Mock
+  private MongoTemplate mongoTemplate;
+  @Mock
+  private ProductChangeNotifier changeNotifier;
+  @Mock
+  private BulkOperations bulkOperations;
+  @Mock
+  private BulkWriteResult bulkWriteResult;
+  private StripedExecutor stripedExecutor;
+  private StockService underTest;
+
+  @BeforeEach
+  void setUp() {
+    stripedExecutor = new StripedExecutor(1);
+    underTest = new StockService(mongoTemplate, changeNotifier, stripedExecutor,
+        new ProductMetrics(new SimpleMeterRegistry()));
+    ReflectionTestUtils.setField(underTest, "atomicReservations", true);
+    ReflectionTestUtils.setField(underTest, "maxPendingReservations", 500);
+  }
+
+  @AfterEach
+  void tearDown() {
+    stripedExecutor.shutdown();
+  }
+
+  @Test
+  void shouldFetchOrderWithSingleBulkWrite() {
+    // given
+    ObjectId first = ObjectId.get();
+    ObjectId second = ObjectId.get();
+    givenBulkWriteMatching(2);
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(
+        new OrderItem(first.toString(), 3),
+        new OrderItem(second.toString(), 1),
+        new OrderItem(first.toString(), 2)));
+
+    // then
+    assertThat(result.isComplete()).isTrue();
+    assertThat(result.getItems()).extracting(StockItemResult::getQty).containsExactly(5, 1);
+
+    ArgumentCaptor<Query> queryArgumentCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations, times(2)).updateOne(queryArgumentCaptor.capture(), updateArgumentCaptor.capture());
+    verify(bulkOperations).execute();
+
+    Document query = queryArgumentCaptor.getAllValues().get(0).getQueryObject();
+    assertThat(query.get("_id")).isEqualTo(first);
+    assertThat(query.get("qty", Document.class).get("$gte")).isEqualTo(5);
+    assertThat(query.get(StockService.RESERVATIONS_FIELD, Document.class).get("$ne")).isEqualTo("reservation");
+    assertThat(query.get(StockService.RESERVATIONS_FIELD + ".499", Document.class).get("$exists")).isEqualTo(false);
+    Document update = updateArgumentCaptor.getAllValues().get(0).getUpdateObject();
+    assertThat(update.get("$inc", Document.class).get("qty")).isEqualTo(-5);
+    assertThat(update.get("$push", Document.class)).containsKey(StockService.RESERVATIONS_FIELD);
+    Object updatedAt = update.get("$set", Document.class).get("updatedAt");
+    assertThat(updatedAt).isInstanceOf(Instant.class);
+
+    verify(changeNotifier).notifyChanged(Set.of(first, second), (Instant) updatedAt);
+  }
+
+  @Test
+  void shouldResolveItemOutcomesWhenBulkWriteIsIncomplete() {
+    // given
+    ReflectionTestUtils.setField(underTest, "atomicReservations", false);
+    ObjectId updated = ObjectId.get();
+    ObjectId insufficient = ObjectId.get();
+    ObjectId missing = ObjectId.get();
+    givenBulkWriteMatching(1);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(List.of(
+        new Document("_id", updated).append(StockService.RESERVATIONS_FIELD, List.of("reservation")),
+        new Document("_id", insufficient).append("qty", 0)
+            .append(StockService.RESERVATIONS_FIELD, List.of("other"))));
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(
+        new OrderItem(updated.toString(), 1),
+        new OrderItem(insufficient.toString(), 1),
+        new OrderItem(missing.toString(), 1),
+        new OrderItem("invalid", 1)));
+
+    // then
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus).containsExactly(
+        StockItemStatus.UPDATED,
+        StockItemStatus.INSUFFICIENT_QUANTITY,
+        StockItemStatus.NOT_FOUND,
+        StockItemStatus.NOT_FOUND);
+    verify(changeNotifier).notifyChanged(eq(Set.of(updated)), any(Instant.class));
+  }
+
+  @Test
+  void shouldRollBackIncompleteReservation() {
+    // given
+    ObjectId updated = ObjectId.get();
+    ObjectId insufficient = ObjectId.get();
+    givenBulkWriteMatching(1);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(List.of(
+        new Document("_id", updated).append(StockService.RESERVATIONS_FIELD, List.of("reservation")),
+        new Document("_id", insufficient).append("qty", 0)));
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(
+        new OrderItem(updated.toString(), 2),
+        new OrderItem(insufficient.toString(), 1)));
+
+    // then
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus).containsExactly(
+        StockItemStatus.ROLLED_BACK,
+        StockItemStatus.INSUFFICIENT_QUANTITY);
+
+    ArgumentCaptor<Query> queryArgumentCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations, times(3)).updateOne(queryArgumentCaptor.capture(), updateArgumentCaptor.capture());
+    verify(bulkOperations, times(2)).execute();
+
+    Document rollbackQuery = queryArgumentCaptor.getAllValues().get(2).getQueryObject();
+    assertThat(rollbackQuery.get("_id")).isEqualTo(updated);
+    assertThat(rollbackQuery.get(StockService.RESERVATIONS_FIELD)).isEqualTo("reservation");
+    Document rollbackUpdate = updateArgumentCaptor.getAllValues().get(2).getUpdateObject();
+    assertThat(rollbackUpdate.get("$inc", Document.class).get("qty")).isEqualTo(2);
+    assertThat(rollbackUpdate.get("$pull", Document.class).get(StockService.RESERVATIONS_FIELD))
+        .isEqualTo("reservation");
+    verify(changeNotifier, times(2)).notifyChanged(eq(Set.of(updated)), any(Instant.class));
+  }
+
+  @Test
+  void shouldRollBackOnlyIncompleteOrdersOfBatch() {
+    // given
+    ObjectId shared = ObjectId.get();
+    ObjectId insufficient = ObjectId.get();
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willReturn(bulkWriteResult);
+    given(bulkWriteResult.getMatchedCount()).willReturn(2, 1);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(List.of(
+        new Document("_id", shared).append(StockService.RESERVATIONS_FIELD, List.of("complete", "incomplete")),
+        new Document("_id", insufficient).append("qty", 0)));
+
+    // when
+    List<StockUpdateResult> results = underTest.fetch(List.of(
+        new StockUpdateRequest("complete", List.of(new OrderItem(shared.toString(), 1))),
+        new StockUpdateRequest("incomplete", List.of(
+            new OrderItem(shared.toString(), 1),
+            new OrderItem(insufficient.toString(), 1)))));
+
+    // then
+    assertThat(results).extracting(StockUpdateResult::getReservationId).containsExactly("complete", "incomplete");
+    assertThat(results.get(0).getItems()).extracting(StockItemResult::getStatus)
+        .containsExactly(StockItemStatus.UPDATED);
+    assertThat(results.get(1).getItems()).extracting(StockItemResult::getStatus)
+        .containsExactly(StockItemStatus.ROLLED_BACK, StockItemStatus.INSUFFICIENT_QUANTITY);
+
+    ArgumentCaptor<Query> queryArgumentCaptor = ArgumentCaptor.forClass(Query.class);
+    verify(bulkOperations, times(4)).updateOne(queryArgumentCaptor.capture(), any(Update.class));
+    verify(bulkOperations, times(2)).execute();
+    Document rollbackQuery = queryArgumentCaptor.getAllValues().get(3).getQueryObject();
+    assertThat(rollbackQuery.get("_id")).isEqualTo(shared);
+    assertThat(rollbackQuery.get(StockService.RESERVATIONS_FIELD)).isEqualTo("incomplete");
+  }
+
+  @Test
+  void shouldResolveRollbackOutcomesFromReservationTags() {
+    // given
+    ObjectId reverted = ObjectId.get();
+    ObjectId notReverted = ObjectId.get();
+    ObjectId insufficient = ObjectId.get();
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willReturn(bulkWriteResult);
+    given(bulkWriteResult.getMatchedCount()).willReturn(2, 1);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(
+        List.of(
+            new Document("_id", reverted).append(StockService.RESERVATIONS_FIELD, List.of("reservation")),
+            new Document("_id", notReverted).append(StockService.RESERVATIONS_FIELD, List.of("reservation")),
+            new Document("_id", insufficient).append("qty", 0)),
+        List.of(
+            new Document("_id", reverted).append(StockService.RESERVATIONS_FIELD, List.of()),
+            new Document("_id", notReverted).append(StockService.RESERVATIONS_FIELD, List.of("reservation"))));
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(
+        new OrderItem(reverted.toString(), 1),
+        new OrderItem(notReverted.toString(), 1),
+        new OrderItem(insufficient.toString(), 1)));
+
+    // then
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus).containsExactly(
+        StockItemStatus.ROLLED_BACK,
+        StockItemStatus.FAILED,
+        StockItemStatus.INSUFFICIENT_QUANTITY);
+    verify(mongoTemplate, times(2)).find(any(Query.class), eq(Document.class), eq("products"));
+  }
+
+  @Test
+  void shouldRestoreQuantityWithoutGuard() {
+    // given
+    ObjectId productId = ObjectId.get();
+    givenBulkWriteMatching(1);
+
+    // when
+    StockUpdateResult result = restore("reservation", List.of(new OrderItem(productId.toString(), 3)));
+
+    // then
+    assertThat(result.isComplete()).isTrue();
+
+    ArgumentCaptor<Query> queryArgumentCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOperations).updateOne(queryArgumentCaptor.capture(), updateArgumentCaptor.capture());
+
+    assertThat(queryArgumentCaptor.getValue().getQueryObject()).doesNotContainKey("qty");
+    assertThat(queryArgumentCaptor.getValue().getQueryObject()
+        .get(StockService.RESERVATIONS_FIELD, Document.class).get("$ne")).isEqualTo("reservation");
+    assertThat(updateArgumentCaptor.getValue().getUpdateObject().get("$inc", Document.class).get("qty"))
+        .isEqualTo(3);
+  }
+
+  @Test
+  void shouldReportRedeliveredRestoreAsUpdated() {
+    // given
+    ObjectId applied = ObjectId.get();
+    ObjectId untagged = ObjectId.get();
+    givenBulkWriteMatching(0);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(List.of(
+        new Document("_id", applied).append(StockService.RESERVATIONS_FIELD, List.of("reservation")),
+        new Document("_id", untagged)));
+
+    // when
+    StockUpdateResult result = restore("reservation", List.of(
+        new OrderItem(applied.toString(), 3),
+        new OrderItem(untagged.toString(), 1)));
+
+    // then
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus)
+        .containsExactly(StockItemStatus.UPDATED, StockItemStatus.FAILED);
+  }
+
+  @Test
+  void shouldFailFetchRefusedWithEnoughQuantity() {
+    // given
+    ReflectionTestUtils.setField(underTest, "atomicReservations", false);
+    ObjectId productId = ObjectId.get();
+    givenBulkWriteMatching(0);
+    given(mongoTemplate.getCollectionName(Product.class)).willReturn("products");
+    given(mongoTemplate.find(any(Query.class), eq(Document.class), eq("products"))).willReturn(List.of(
+        new Document("_id", productId).append("qty", 10)));
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(new OrderItem(productId.toString(), 2)));
+
+    // then
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus).containsExactly(StockItemStatus.FAILED);
+  }
+
+  @Test
+  void shouldClearReservationTagsOfProcessedUpdates() {
+    // given
+    ObjectId productId = ObjectId.get();
+
+    // when
+    underTest.clearReservations(List.of(
+        new StockUpdateRequest("first", List.of(new OrderItem(productId.toString(), 1))),
+        new StockUpdateRequest("second", List.of(new OrderItem("invalid", 1)))));
+
+    // then
+    ArgumentCaptor<Query> queryArgumentCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updateArgumentCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate).updateMulti(queryArgumentCaptor.capture(), updateArgumentCaptor.capture(),
+        eq(Product.class));
+    assertThat(queryArgumentCaptor.getValue().getQueryObject().get("_id", Document.class).get("$in",
+        Collection.class)).containsExactly(productId);
+    assertThat(updateArgumentCaptor.getValue().getUpdateObject().get("$pullAll", Document.class)
+        .get(StockService.RESERVATIONS_FIELD, List.class)).containsExactly("first", "second");
+  }
+
+  @Test
+  void shouldFailOnlyItemsWithWriteErrors() {
+    // given
+    ReflectionTestUtils.setField(underTest, "atomicReservations", false);
+    ObjectId updated = ObjectId.get();
+    ObjectId failed = ObjectId.get();
+    BulkOperationException exception = mock(BulkOperationException.class);
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willThrow(exception);
+    given(exception.getResult()).willReturn(bulkWriteResult);
+    given(exception.getErrors()).willReturn(List.of(new BulkWriteError(50, "timeout", new BsonDocument(), 1)));
+    given(bulkWriteResult.getMatchedCount()).willReturn(1);
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(
+        new OrderItem(updated.toString(), 1),
+        new OrderItem(failed.toString(), 1)));
+
+    // then
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus)
+        .containsExactly(StockItemStatus.UPDATED, StockItemStatus.FAILED);
+    verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
+  }
+
+  @Test
+  void shouldFailItemsOfFailedBulkWriteWithoutThrowing() {
+    // given
+    ReflectionTestUtils.setField(underTest, "atomicReservations", false);
+    ObjectId productId = ObjectId.get();
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willThrow(new DataAccessResourceFailureException("Connection refused"));
+
+    // when
+    StockUpdateResult result = fetch("reservation", List.of(new OrderItem(productId.toString(), 1)));
+
+    // then
+    assertThat(result.getItems()).extracting(StockItemResult::getStatus).containsExactly(StockItemStatus.FAILED);
+    verify(changeNotifier, never()).notifyChanged(anyCollection(), any(Instant.class));
+  }
+
+  private StockUpdateResult fetch(String reservationId, List<OrderItem> orderItems) {
+    return underTest.fetch(List.of(new StockUpdateRequest(reservationId, orderItems))).get(0);
+  }
+
+  private StockUpdateResult restore(String reservationId, List<OrderItem> orderItems) {
+    return underTest.restore(List.of(new StockUpdateRequest(reservationId, orderItems))).get(0);
+  }
+
+  private void givenBulkWriteMatching(int matched) {
+    given(mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class)).willReturn(bulkOperations);
+    given(bulkOperations.execute()).willReturn(bulkWriteResult);
+    given(bulkWriteResult.getMatchedCount()).willReturn(matched);
+  }
+}
@@ -0,0 +1,70 @@
+package com.drevotiuk.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StripedExecutorTest {
+  private StripedExecutor underTest;
+
+  @BeforeEach
+  void setUp() {
+    underTest = new StripedExecutor(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    underTest.shutdown();
+  }
+
+  @Test
+  void shouldAssignSameKeyToSameStripe() {
+    // given
+    ObjectId productId = ObjectId.get();
+
+    // when
+    int stripe = underTest.stripeOf(productId);
+
+    // then
+    assertThat(stripe).isBetween(0, 3);
+    assertThat(underTest.stripeOf(new ObjectId(productId.toHexString()))).isEqualTo(stripe);
+  }
+
+  @Test
+  void shouldRunTasksOfStripeInSubmissionOrder() {
+    // given
+    List<Integer> completed = new CopyOnWriteArrayList<>();
+
+    // when
+    List<CompletableFuture<Integer>> futures = IntStream.range(0, 100)
+        .mapToObj(task -> underTest.submit(1, () -> {
+          completed.add(task);
+          return task;
+        }))
+        .collect(Collectors.toList());
+    futures.forEach(CompletableFuture::join);
+
+    // then
+    assertThat(completed).isSorted().hasSize(100);
+  }
+
+  @Test
+  void shouldRunDifferentStripesOnDifferentThreads() {
+    // given
+    // when
+    String first = underTest.submit(0, () -> Thread.currentThread().getName()).join();
+    String second = underTest.submit(1, () -> Thread.currentThread().getName()).join();
+
+    // then
+    assertThat(first).startsWith("stock-stripe-").isNotEqualTo(second);
+  }
+}